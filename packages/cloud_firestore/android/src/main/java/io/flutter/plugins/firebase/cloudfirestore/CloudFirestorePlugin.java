@@ -6,6 +6,9 @@ package io.flutter.plugins.firebase.cloudfirestore;
 
 import android.app.Activity;
 import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.SparseArray;
 import androidx.annotation.NonNull;
@@ -35,13 +38,17 @@ import com.google.firebase.firestore.MetadataChanges;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.SnapshotMetadata;
 import com.google.firebase.firestore.Source;
 import com.google.firebase.firestore.Transaction;
 import com.google.firebase.firestore.WriteBatch;
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
+import io.flutter.plugin.common.MethodCodec;
 import io.flutter.plugin.common.PluginRegistry;
 import io.flutter.plugin.common.StandardMessageCodec;
 import io.flutter.plugin.common.StandardMethodCodec;
@@ -49,17 +56,32 @@ import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class CloudFirestorePlugin implements MethodCallHandler {
 
   private static final String TAG = "CloudFirestorePlugin";
+  private static final String CHANNEL_NAME = "plugins.flutter.io/cloud_firestore";
+  private static final String DOCUMENT_PAGES_CHANNEL_NAME =
+      "plugins.flutter.io/cloud_firestore/document_pages";
+  private static final MethodCodec CODEC = new StandardMethodCodec(FirestoreMessageCodec.INSTANCE);
   private final MethodChannel channel;
+  private final BinaryMessenger messenger;
   private final Activity activity;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  // Converts snapshots of listeners that encode in the background, one at a time so that each
+  // listener's snapshots stay in order. Created when first needed.
+  private ScheduledExecutorService snapshotExecutor;
+  // Where pages of Query#getDocumentPages go, while the Dart side listens for them.
+  private EventChannel.EventSink documentPagesSink;
 
   // Handles are ints used as indexes into the sparse array of active observers
   private int nextListenerHandle = 0;
@@ -72,19 +94,64 @@ public class CloudFirestorePlugin implements MethodCallHandler {
   private final SparseArray<TaskCompletionSource> completionTasks = new SparseArray<>();
 
   public static void registerWith(PluginRegistry.Registrar registrar) {
-    final MethodChannel channel =
-        new MethodChannel(
-            registrar.messenger(),
-            "plugins.flutter.io/cloud_firestore",
-            new StandardMethodCodec(FirestoreMessageCodec.INSTANCE));
-    channel.setMethodCallHandler(new CloudFirestorePlugin(channel, registrar.activity()));
+    final MethodChannel channel = new MethodChannel(registrar.messenger(), CHANNEL_NAME, CODEC);
+    final CloudFirestorePlugin instance =
+        new CloudFirestorePlugin(channel, registrar.messenger(), registrar.activity());
+    channel.setMethodCallHandler(instance);
+    final EventChannel documentPagesChannel =
+        new EventChannel(registrar.messenger(), DOCUMENT_PAGES_CHANNEL_NAME, CODEC);
+    documentPagesChannel.setStreamHandler(
+        new EventChannel.StreamHandler() {
+          @Override
+          public void onListen(Object arguments, EventChannel.EventSink events) {
+            instance.documentPagesSink = events;
+          }
+
+          @Override
+          public void onCancel(Object arguments) {
+            instance.documentPagesSink = null;
+          }
+        });
   }
 
-  private CloudFirestorePlugin(MethodChannel channel, Activity activity) {
+  private CloudFirestorePlugin(
+      MethodChannel channel, BinaryMessenger messenger, Activity activity) {
     this.channel = channel;
+    this.messenger = messenger;
     this.activity = activity;
   }
 
+  private ScheduledExecutorService getSnapshotExecutor() {
+    if (snapshotExecutor == null) {
+      snapshotExecutor = Executors.newSingleThreadScheduledExecutor();
+    }
+    return snapshotExecutor;
+  }
+
+  /**
+   * Invokes a method on the Dart side for a snapshot listener, from a background thread. The
+   * message is encoded on the calling thread and only sent on the main thread. It is dropped if
+   * the listener was removed in the meantime, as the Dart side no longer expects it.
+   *
+   * @param expectedSize the size of the listener's previous message, to size the buffer by
+   * @return the size of the message
+   */
+  private int invokeMethodFromBackground(
+      final int handle, String method, Object arguments, int expectedSize) {
+    final ByteBuffer message =
+        FirestoreMessageCodec.INSTANCE.encodeMethodCall(method, arguments, expectedSize);
+    mainHandler.post(
+        new Runnable() {
+          @Override
+          public void run() {
+            if (listenerRegistrations.get(handle) != null) {
+              messenger.send(CHANNEL_NAME, message);
+            }
+          }
+        });
+    return message.position();
+  }
+
   private FirebaseFirestore getFirestore(Map<String, Object> arguments) {
     String appName = (String) arguments.get("app");
     return FirebaseFirestore.getInstance(FirebaseApp.getInstance(appName));
@@ -146,65 +213,25 @@ public class CloudFirestorePlugin implements MethodCallHandler {
     return data.toArray();
   }
 
-  private Map<String, Object> parseQuerySnapshot(QuerySnapshot querySnapshot) {
-    if (querySnapshot == null) return new HashMap<>();
-    Map<String, Object> data = new HashMap<>();
-    List<String> paths = new ArrayList<>();
-    List<Map<String, Object>> documents = new ArrayList<>();
-    List<Map<String, Object>> metadatas = new ArrayList<>();
-    for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-      paths.add(document.getReference().getPath());
-      documents.add(document.getData());
-      Map<String, Object> metadata = new HashMap<String, Object>();
-      metadata.put("hasPendingWrites", document.getMetadata().hasPendingWrites());
-      metadata.put("isFromCache", document.getMetadata().isFromCache());
-      metadatas.add(metadata);
-    }
-    data.put("paths", paths);
-    data.put("documents", documents);
-    data.put("metadatas", metadatas);
-
-    List<Map<String, Object>> documentChanges = new ArrayList<>();
-    for (DocumentChange documentChange : querySnapshot.getDocumentChanges()) {
-      Map<String, Object> change = new HashMap<>();
-      String type = null;
-      switch (documentChange.getType()) {
-        case ADDED:
-          type = "DocumentChangeType.added";
-          break;
-        case MODIFIED:
-          type = "DocumentChangeType.modified";
-          break;
-        case REMOVED:
-          type = "DocumentChangeType.removed";
-          break;
-      }
-      change.put("type", type);
-      change.put("oldIndex", documentChange.getOldIndex());
-      change.put("newIndex", documentChange.getNewIndex());
-      change.put("document", documentChange.getDocument().getData());
-      change.put("path", documentChange.getDocument().getReference().getPath());
-      Map<String, Object> metadata = new HashMap();
-      metadata.put(
-          "hasPendingWrites", documentChange.getDocument().getMetadata().hasPendingWrites());
-      metadata.put("isFromCache", documentChange.getDocument().getMetadata().isFromCache());
-      change.put("metadata", metadata);
-      documentChanges.add(change);
-    }
-    data.put("documentChanges", documentChanges);
-
-    Map<String, Object> metadata = new HashMap<>();
-    metadata.put("hasPendingWrites", querySnapshot.getMetadata().hasPendingWrites());
-    metadata.put("isFromCache", querySnapshot.getMetadata().isFromCache());
-    data.put("metadata", metadata);
-
-    return data;
-  }
-
   private Transaction getTransaction(Map<String, Object> arguments) {
     return transactions.get((Integer) arguments.get("transactionId"));
   }
 
+  /** Returns the field of the first inequality filter among {@code whereConditions}, if any. */
+  @Nullable
+  private static String getInequalityFieldName(List<List<Object>> whereConditions) {
+    for (List<Object> condition : whereConditions) {
+      String operator = (String) condition.get(1);
+      if ("<".equals(operator)
+          || "<=".equals(operator)
+          || ">".equals(operator)
+          || ">=".equals(operator)) {
+        return (String) condition.get(0);
+      }
+    }
+    return null;
+  }
+
   private Query getQuery(Map<String, Object> arguments) {
     Query query = getReference(arguments);
     @SuppressWarnings("unchecked")
@@ -238,6 +265,13 @@ public class CloudFirestorePlugin implements MethodCallHandler {
     @SuppressWarnings("unchecked")
     List<List<Object>> orderBy = (List<List<Object>>) parameters.get("orderBy");
     if (orderBy == null) return query;
+    String inequalityFieldName = getInequalityFieldName(whereConditions);
+    if (orderBy.isEmpty() && inequalityFieldName != null) {
+      // Firestore implicitly orders by the field of an inequality filter, but rejects the document
+      // ID order that cursors add below unless that field comes first. Ordering by it explicitly
+      // gives the same results and puts its value into the cursors.
+      orderBy = Collections.singletonList(Arrays.<Object>asList(inequalityFieldName, false));
+    }
     for (List<Object> order : orderBy) {
       String orderByFieldName = (String) order.get(0);
       boolean descending = (boolean) order.get(1);
@@ -259,7 +293,8 @@ public class CloudFirestorePlugin implements MethodCallHandler {
         || startAfterDocument != null
         || endAtDocument != null
         || endBeforeDocument != null) {
-      boolean descending = (boolean) orderBy.get(orderBy.size() - 1).get(1);
+      boolean descending =
+          !orderBy.isEmpty() && (boolean) orderBy.get(orderBy.size() - 1).get(1);
       Query.Direction direction =
           descending ? Query.Direction.DESCENDING : Query.Direction.ASCENDING;
       query = query.orderBy(FieldPath.documentId(), direction);
@@ -293,9 +328,12 @@ public class CloudFirestorePlugin implements MethodCallHandler {
 
   private class DocumentObserver implements EventListener<DocumentSnapshot> {
     private int handle;
+    private final boolean encodeInBackground;
+    private int messageSize = 0;
 
-    DocumentObserver(int handle) {
+    DocumentObserver(int handle, boolean encodeInBackground) {
       this.handle = handle;
+      this.encodeInBackground = encodeInBackground;
     }
 
     @Override
@@ -318,15 +356,57 @@ public class CloudFirestorePlugin implements MethodCallHandler {
         arguments.put("data", null);
         arguments.put("path", documentSnapshot.getReference().getPath());
       }
-      channel.invokeMethod("DocumentSnapshot", arguments);
+      if (encodeInBackground) {
+        messageSize =
+            invokeMethodFromBackground(handle, "DocumentSnapshot", arguments, messageSize);
+      } else {
+        channel.invokeMethod("DocumentSnapshot", arguments);
+      }
     }
   }
 
+  /**
+   * Sends a listener's query snapshots to the Dart side. With a coalescing interval, at most one
+   * snapshot is sent per interval. Snapshots that arrive sooner are held back, and only the latest
+   * is sent at the end of the interval, with the document changes of all of them.
+   */
   private class EventObserver implements EventListener<QuerySnapshot> {
     private int handle;
+    private final MetadataChanges metadataChanges;
+    private final boolean incremental;
+    private final boolean encodeInBackground;
+    private final long coalesceIntervalMillis;
+    private boolean hasSentDocuments = false;
+    private int messageSize = 0;
+    private long lastSentMillis = 0;
+    // The latest snapshot held back, and the changes since the last one sent. Only touched on the
+    // thread the listener is called on, where the flush also runs.
+    private QuerySnapshot pendingSnapshot;
+    private List<DocumentChange> pendingChanges;
+
+    private final Runnable flush =
+        new Runnable() {
+          @Override
+          public void run() {
+            QuerySnapshot snapshot = pendingSnapshot;
+            List<DocumentChange> documentChanges = pendingChanges;
+            pendingSnapshot = null;
+            pendingChanges = null;
+            send(snapshot, documentChanges);
+          }
+        };
 
-    EventObserver(int handle) {
+    EventObserver(
+        int handle,
+        MetadataChanges metadataChanges,
+        boolean incremental,
+        boolean encodeInBackground,
+        long coalesceIntervalMillis) {
       this.handle = handle;
+      this.metadataChanges = metadataChanges;
+      this.incremental = incremental;
+      this.encodeInBackground = encodeInBackground;
+      this.coalesceIntervalMillis = coalesceIntervalMillis;
     }
 
     @Override
@@ -337,10 +417,156 @@ public class CloudFirestorePlugin implements MethodCallHandler {
         return;
       }
 
-      Map<String, Object> arguments = parseQuerySnapshot(querySnapshot);
-      arguments.put("handle", handle);
+      // Incremental listeners also get metadata-only changes, so they can keep their documents up
+      // to date.
+      List<DocumentChange> documentChanges =
+          incremental
+              ? querySnapshot.getDocumentChanges(metadataChanges)
+              : querySnapshot.getDocumentChanges();
+      if (pendingSnapshot != null) {
+        // Each change's indexes assume the ones before it were applied, so appending the new
+        // changes to the held back ones gives the changes since the last snapshot sent.
+        pendingSnapshot = querySnapshot;
+        pendingChanges.addAll(documentChanges);
+        return;
+      }
+      long wait = lastSentMillis + coalesceIntervalMillis - SystemClock.uptimeMillis();
+      if (coalesceIntervalMillis == 0 || wait <= 0) {
+        send(querySnapshot, documentChanges);
+        return;
+      }
+      pendingSnapshot = querySnapshot;
+      pendingChanges = new ArrayList<>(documentChanges);
+      if (encodeInBackground) {
+        getSnapshotExecutor().schedule(flush, wait, TimeUnit.MILLISECONDS);
+      } else {
+        mainHandler.postDelayed(flush, wait);
+      }
+    }
+
+    private void send(QuerySnapshot querySnapshot, List<DocumentChange> documentChanges) {
+      // Incremental listeners get the documents only with the first snapshot.
+      FirestoreMessageCodec.QuerySnapshotMessage arguments =
+          new FirestoreMessageCodec.QuerySnapshotMessage(
+              handle, querySnapshot, documentChanges, !incremental || !hasSentDocuments);
+      hasSentDocuments = true;
+      lastSentMillis = SystemClock.uptimeMillis();
+
+      if (encodeInBackground) {
+        messageSize = invokeMethodFromBackground(handle, "QuerySnapshot", arguments, messageSize);
+      } else if (listenerRegistrations.get(handle) != null) {
+        // A held back snapshot can be flushed after the listener was removed.
+        channel.invokeMethod("QuerySnapshot", arguments);
+      }
+    }
+  }
+
+  /**
+   * Fetches the documents of a query page by page, and sends each page to the Dart side as soon as
+   * it arrives. Each page starts after the last document of the one before, through the same
+   * startAfterDocument parameter that Dart queries use. Removing it stops after the page being
+   * fetched.
+   */
+  private class DocumentPages
+      implements ListenerRegistration, OnSuccessListener<QuerySnapshot>, OnFailureListener {
+    private final int handle;
+    private final Map<String, Object> arguments;
+    private final int pageSize;
+    // The query's own limit on the number of documents, if any.
+    @Nullable private final Number limit;
+    private int requested;
+    private int fetched = 0;
+    private boolean removed = false;
+
+    DocumentPages(int handle, Map<String, Object> arguments) {
+      this.handle = handle;
+      this.arguments = arguments;
+      this.pageSize = (Integer) arguments.get("pageSize");
+      @SuppressWarnings("unchecked")
+      Map<String, Object> parameters = (Map<String, Object>) arguments.get("parameters");
+      this.limit = parameters == null ? null : (Number) parameters.get("limit");
+    }
+
+    void fetch(Map<String, Object> pageArguments) {
+      requested = limit == null ? pageSize : (int) Math.min(pageSize, limit.longValue() - fetched);
+      if (requested <= 0) {
+        // Firestore rejects a limit of 0, and there is nothing left to fetch anyway.
+        finish();
+        return;
+      }
+      getQuery(pageArguments)
+          .limit(requested)
+          .get(getSource(arguments))
+          .addOnSuccessListener(this)
+          .addOnFailureListener(this);
+    }
+
+    @Override
+    public void onSuccess(QuerySnapshot page) {
+      if (removed || documentPagesSink == null) {
+        listenerRegistrations.remove(handle);
+        return;
+      }
+      List<DocumentSnapshot> documents = page.getDocuments();
+      fetched += documents.size();
+      // An empty page is only sent when it is the first, so that the Dart side gets a result.
+      if (!documents.isEmpty() || fetched == 0) {
+        // The changes of a page are just its documents again, so they are left out.
+        documentPagesSink.success(
+            new FirestoreMessageCodec.QuerySnapshotMessage(
+                handle, page, Collections.<DocumentChange>emptyList(), true));
+      }
+      boolean isLastPage =
+          documents.size() < requested || (limit != null && fetched >= limit.longValue());
+      if (isLastPage) {
+        finish();
+      } else {
+        fetch(getNextPageArguments(documents.get(documents.size() - 1)));
+      }
+    }
 
-      channel.invokeMethod("QuerySnapshot", arguments);
+    @Override
+    public void onFailure(@NonNull Exception e) {
+      if (removed || documentPagesSink == null) {
+        listenerRegistrations.remove(handle);
+        return;
+      }
+      documentPagesSink.error("Error performing getDocumentPages", e.getMessage(), handle);
+      listenerRegistrations.remove(handle);
+    }
+
+    @Override
+    public void remove() {
+      removed = true;
+    }
+
+    /** Tells the Dart side that there are no more pages. */
+    private void finish() {
+      if (!removed && documentPagesSink != null) {
+        Map<String, Object> done = new HashMap<>();
+        done.put("handle", handle);
+        done.put("done", true);
+        documentPagesSink.success(done);
+      }
+      listenerRegistrations.remove(handle);
+    }
+
+    /** Returns the arguments of a query like this one that starts after the given document. */
+    private Map<String, Object> getNextPageArguments(DocumentSnapshot last) {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> parameters =
+          new HashMap<>((Map<String, Object>) arguments.get("parameters"));
+      parameters.remove("startAt");
+      parameters.remove("startAfter");
+      parameters.remove("startAtDocument");
+      Map<String, Object> startAfterDocument = new HashMap<>();
+      startAfterDocument.put("id", last.getId());
+      startAfterDocument.put("path", last.getReference().getPath());
+      startAfterDocument.put("data", last.getData());
+      parameters.put("startAfterDocument", startAfterDocument);
+      Map<String, Object> pageArguments = new HashMap<>(arguments);
+      pageArguments.put("parameters", parameters);
+      return pageArguments;
     }
   }
 
@@ -623,14 +849,25 @@ public class CloudFirestorePlugin implements MethodCallHandler {
         {
           Map<String, Object> arguments = call.arguments();
           int handle = nextListenerHandle++;
-          EventObserver observer = new EventObserver(handle);
-          observers.put(handle, observer);
           MetadataChanges metadataChanges =
               (Boolean) arguments.get("includeMetadataChanges")
                   ? MetadataChanges.INCLUDE
                   : MetadataChanges.EXCLUDE;
+          boolean encodeInBackground = (Boolean) arguments.get("encodeInBackground");
+          EventObserver observer =
+              new EventObserver(
+                  handle,
+                  metadataChanges,
+                  (Boolean) arguments.get("incremental"),
+                  encodeInBackground,
+                  ((Number) arguments.get("coalesceIntervalMillis")).longValue());
+          observers.put(handle, observer);
+          Query query = getQuery(arguments);
           listenerRegistrations.put(
-              handle, getQuery(arguments).addSnapshotListener(metadataChanges, observer));
+              handle,
+              encodeInBackground
+                  ? query.addSnapshotListener(getSnapshotExecutor(), metadataChanges, observer)
+                  : query.addSnapshotListener(metadataChanges, observer));
           result.success(handle);
           break;
         }
@@ -638,15 +875,19 @@ public class CloudFirestorePlugin implements MethodCallHandler {
         {
           Map<String, Object> arguments = call.arguments();
           int handle = nextListenerHandle++;
-          DocumentObserver observer = new DocumentObserver(handle);
+          boolean encodeInBackground = (Boolean) arguments.get("encodeInBackground");
+          DocumentObserver observer = new DocumentObserver(handle, encodeInBackground);
           documentObservers.put(handle, observer);
           MetadataChanges metadataChanges =
               (Boolean) arguments.get("includeMetadataChanges")
                   ? MetadataChanges.INCLUDE
                   : MetadataChanges.EXCLUDE;
+          DocumentReference reference = getDocumentReference(arguments);
           listenerRegistrations.put(
               handle,
-              getDocumentReference(arguments).addSnapshotListener(metadataChanges, observer));
+              encodeInBackground
+                  ? reference.addSnapshotListener(getSnapshotExecutor(), metadataChanges, observer)
+                  : reference.addSnapshotListener(metadataChanges, observer));
           result.success(handle);
           break;
         }
@@ -654,12 +895,24 @@ public class CloudFirestorePlugin implements MethodCallHandler {
         {
           Map<String, Object> arguments = call.arguments();
           int handle = (Integer) arguments.get("handle");
-          listenerRegistrations.get(handle).remove();
+          // Pages of Query#getDocumentPages may have finished in the meantime.
+          ListenerRegistration registration = listenerRegistrations.get(handle);
+          if (registration != null) registration.remove();
           listenerRegistrations.remove(handle);
           observers.remove(handle);
           result.success(null);
           break;
         }
+      case "Query#getDocumentPages":
+        {
+          Map<String, Object> arguments = call.arguments();
+          int handle = nextListenerHandle++;
+          DocumentPages pages = new DocumentPages(handle, arguments);
+          listenerRegistrations.put(handle, pages);
+          result.success(handle);
+          pages.fetch(arguments);
+          break;
+        }
       case "Query#getDocuments":
         {
           Map<String, Object> arguments = call.arguments();
@@ -670,7 +923,9 @@ public class CloudFirestorePlugin implements MethodCallHandler {
                   new OnSuccessListener<QuerySnapshot>() {
                     @Override
                     public void onSuccess(QuerySnapshot querySnapshot) {
-                      result.success(parseQuerySnapshot(querySnapshot));
+                      result.success(
+                          new FirestoreMessageCodec.QuerySnapshotMessage(
+                              null, querySnapshot, querySnapshot.getDocumentChanges(), true));
                     }
                   })
               .addOnFailureListener(
@@ -816,10 +1071,72 @@ final class FirestoreMessageCodec extends StandardMessageCodec {
   private static final byte TIMESTAMP = (byte) 136;
   private static final byte INCREMENT_DOUBLE = (byte) 137;
   private static final byte INCREMENT_INTEGER = (byte) 138;
+  // Type tags of StandardMessageCodec, for snapshots written without building their maps.
+  private static final byte INT = 3;
+  private static final byte STRING = 7;
+  private static final byte LIST = 12;
+  private static final byte MAP = 13;
+  private static final byte[] KEY_HANDLE = "handle".getBytes(UTF8);
+  private static final byte[] KEY_PATHS = "paths".getBytes(UTF8);
+  private static final byte[] KEY_DOCUMENTS = "documents".getBytes(UTF8);
+  private static final byte[] KEY_METADATAS = "metadatas".getBytes(UTF8);
+  private static final byte[] KEY_DOCUMENT_CHANGES = "documentChanges".getBytes(UTF8);
+  private static final byte[] KEY_METADATA = "metadata".getBytes(UTF8);
+  private static final byte[] KEY_HAS_PENDING_WRITES = "hasPendingWrites".getBytes(UTF8);
+  private static final byte[] KEY_IS_FROM_CACHE = "isFromCache".getBytes(UTF8);
+  private static final byte[] KEY_TYPE = "type".getBytes(UTF8);
+  private static final byte[] KEY_OLD_INDEX = "oldIndex".getBytes(UTF8);
+  private static final byte[] KEY_NEW_INDEX = "newIndex".getBytes(UTF8);
+  private static final byte[] KEY_DOCUMENT = "document".getBytes(UTF8);
+  private static final byte[] KEY_PATH = "path".getBytes(UTF8);
+  private static final byte[] TYPE_ADDED = "DocumentChangeType.added".getBytes(UTF8);
+  private static final byte[] TYPE_MODIFIED = "DocumentChangeType.modified".getBytes(UTF8);
+  private static final byte[] TYPE_REMOVED = "DocumentChangeType.removed".getBytes(UTF8);
+
+  /**
+   * A query snapshot to send to the Dart side. It is written as the map the Dart side reads, but
+   * straight from the snapshot, so no maps are built for its documents and their changes.
+   */
+  static final class QuerySnapshotMessage {
+    @Nullable final Integer handle;
+    final QuerySnapshot snapshot;
+    final List<DocumentChange> documentChanges;
+    final boolean includeDocuments;
+
+    /**
+     * @param handle the listener the snapshot is for, if any
+     * @param includeDocuments false to send only the document changes and the snapshot metadata
+     */
+    QuerySnapshotMessage(
+        @Nullable Integer handle,
+        QuerySnapshot snapshot,
+        List<DocumentChange> documentChanges,
+        boolean includeDocuments) {
+      this.handle = handle;
+      this.snapshot = snapshot;
+      this.documentChanges = documentChanges;
+      this.includeDocuments = includeDocuments;
+    }
+  }
+
+  /**
+   * Encodes a method call as {@link io.flutter.plugin.common.StandardMethodCodec} does, into a
+   * buffer of the expected size, so that large snapshots are not copied every time it grows.
+   */
+  ByteBuffer encodeMethodCall(String method, Object arguments, int expectedSize) {
+    final ExposedByteArrayOutputStream stream = new ExposedByteArrayOutputStream(expectedSize);
+    writeValue(stream, method);
+    writeValue(stream, arguments);
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(stream.size());
+    buffer.put(stream.buffer(), 0, stream.size());
+    return buffer;
+  }
 
   @Override
   protected void writeValue(ByteArrayOutputStream stream, Object value) {
-    if (value instanceof Date) {
+    if (value instanceof QuerySnapshotMessage) {
+      writeQuerySnapshot(stream, (QuerySnapshotMessage) value);
+    } else if (value instanceof Date) {
       stream.write(DATE_TIME);
       writeLong(stream, ((Date) value).getTime());
     } else if (value instanceof Timestamp) {
@@ -844,6 +1161,97 @@ final class FirestoreMessageCodec extends StandardMessageCodec {
     }
   }
 
+  private void writeQuerySnapshot(ByteArrayOutputStream stream, QuerySnapshotMessage message) {
+    final QuerySnapshot snapshot = message.snapshot;
+    stream.write(MAP);
+    if (snapshot == null) {
+      writeSize(stream, 0);
+      return;
+    }
+    writeSize(stream, 2 + (message.handle != null ? 1 : 0) + (message.includeDocuments ? 3 : 0));
+    if (message.handle != null) {
+      writeKey(stream, KEY_HANDLE);
+      writeInteger(stream, message.handle);
+    }
+    if (message.includeDocuments) {
+      final List<DocumentSnapshot> documents = snapshot.getDocuments();
+      writeKey(stream, KEY_PATHS);
+      stream.write(LIST);
+      writeSize(stream, documents.size());
+      for (DocumentSnapshot document : documents) {
+        writeValue(stream, document.getReference().getPath());
+      }
+      writeKey(stream, KEY_DOCUMENTS);
+      stream.write(LIST);
+      writeSize(stream, documents.size());
+      for (DocumentSnapshot document : documents) {
+        writeValue(stream, document.getData());
+      }
+      writeKey(stream, KEY_METADATAS);
+      stream.write(LIST);
+      writeSize(stream, documents.size());
+      for (DocumentSnapshot document : documents) {
+        writeMetadata(stream, document.getMetadata());
+      }
+    }
+    writeKey(stream, KEY_DOCUMENT_CHANGES);
+    stream.write(LIST);
+    writeSize(stream, message.documentChanges.size());
+    for (DocumentChange documentChange : message.documentChanges) {
+      writeDocumentChange(stream, documentChange);
+    }
+    writeKey(stream, KEY_METADATA);
+    writeMetadata(stream, snapshot.getMetadata());
+  }
+
+  private void writeDocumentChange(ByteArrayOutputStream stream, DocumentChange documentChange) {
+    final DocumentSnapshot document = documentChange.getDocument();
+    stream.write(MAP);
+    writeSize(stream, 6);
+    writeKey(stream, KEY_TYPE);
+    switch (documentChange.getType()) {
+      case ADDED:
+        writeKey(stream, TYPE_ADDED);
+        break;
+      case MODIFIED:
+        writeKey(stream, TYPE_MODIFIED);
+        break;
+      case REMOVED:
+        writeKey(stream, TYPE_REMOVED);
+        break;
+    }
+    writeKey(stream, KEY_OLD_INDEX);
+    writeInteger(stream, documentChange.getOldIndex());
+    writeKey(stream, KEY_NEW_INDEX);
+    writeInteger(stream, documentChange.getNewIndex());
+    writeKey(stream, KEY_DOCUMENT);
+    writeValue(stream, document.getData());
+    writeKey(stream, KEY_PATH);
+    writeValue(stream, document.getReference().getPath());
+    writeKey(stream, KEY_METADATA);
+    writeMetadata(stream, document.getMetadata());
+  }
+
+  private void writeMetadata(ByteArrayOutputStream stream, SnapshotMetadata metadata) {
+    stream.write(MAP);
+    writeSize(stream, 2);
+    writeKey(stream, KEY_HAS_PENDING_WRITES);
+    writeValue(stream, metadata.hasPendingWrites());
+    writeKey(stream, KEY_IS_FROM_CACHE);
+    writeValue(stream, metadata.isFromCache());
+  }
+
+  /** Writes a string that is already encoded, such as a map key. */
+  private static void writeKey(ByteArrayOutputStream stream, byte[] utf8) {
+    stream.write(STRING);
+    writeBytes(stream, utf8);
+  }
+
+  private static void writeInteger(ByteArrayOutputStream stream, int value) {
+    stream.write(INT);
+    writeInt(stream, value);
+  }
+
   @Override
   protected Object readValueOfType(byte type, ByteBuffer buffer) {
     switch (type) {
@@ -897,4 +1305,14 @@ final class FirestoreMessageCodec extends StandardMessageCodec {
     String message = "java.util.List was expected, unable to convert '%s' to an object array";
     throw new IllegalArgumentException(String.format(message, sourceType));
   }
+
+  private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+    ExposedByteArrayOutputStream(int size) {
+      super(size);
+    }
+
+    byte[] buffer() {
+      return buf;
+    }
+  }
 }
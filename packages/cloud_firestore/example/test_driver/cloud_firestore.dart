@@ -1,4 +1,5 @@
 import 'dart:async';
+import 'dart:io';
 
 import 'package:cloud_firestore/cloud_firestore.dart';
 import 'package:firebase_core/firebase_core.dart';
@@ -255,6 +256,34 @@ void main() {
       await doc2.delete();
     });
 
+    test('getDocumentPages with inequality filter', () async {
+      if (!Platform.isAndroid) return;
+      final CollectionReference messages = firestore.collection('messages');
+      // Use document ID as a unique identifier to ensure that we don't
+      // collide with other tests running against this database.
+      final String testRun = messages.document().documentID;
+      final CollectionReference pages =
+          messages.document(testRun).collection('pages');
+      final List<DocumentReference> docs = <DocumentReference>[];
+      for (int i = 0; i < 3; i++) {
+        docs.add(await pages.add(<String, dynamic>{'number': i}));
+      }
+
+      // Pages after the first start after a document, which needs the
+      // implicit order by the inequality field made explicit.
+      final List<QuerySnapshot> results = await pages
+          .where('number', isGreaterThan: 0)
+          .getDocumentPages(pageSize: 1)
+          .toList();
+      expect(results, hasLength(2));
+      expect(results[0].documents.single.data['number'], 1);
+      expect(results[1].documents.single.data['number'], 2);
+
+      for (DocumentReference doc in docs) {
+        await doc.delete();
+      }
+    });
+
     test('pagination with map', () async {
       // Populate the database with two test documents.
       final CollectionReference messages = firestore.collection('messages');
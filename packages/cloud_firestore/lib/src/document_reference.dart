@@ -115,9 +115,15 @@ class DocumentReference {
   }
 
   /// Notifies of documents at this location
+  ///
+  /// With [encodeInBackground], the platform prepares snapshots for Dart on a
+  /// background thread instead of its main thread. Only Android supports this;
+  /// elsewhere it is ignored.
   // TODO(jackson): Reduce code duplication with [Query]
-  Stream<DocumentSnapshot> snapshots({bool includeMetadataChanges = false}) {
+  Stream<DocumentSnapshot> snapshots(
+      {bool includeMetadataChanges = false, bool encodeInBackground = false}) {
     assert(includeMetadataChanges != null);
+    assert(encodeInBackground != null);
     Future<int> _handle;
     // It's fine to let the StreamController be garbage collected once all the
     // subscribers have cancelled; this analyzer warning is safe to ignore.
@@ -130,6 +136,7 @@ class DocumentReference {
             'app': firestore.app.name,
             'path': path,
             'includeMetadataChanges': includeMetadataChanges,
+            'encodeInBackground': encodeInBackground,
           },
         ).then<int>((dynamic result) => result);
         _handle.then((int handle) {
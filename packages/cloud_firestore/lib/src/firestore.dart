@@ -12,8 +12,13 @@ class Firestore {
     if (_initialized) return;
     channel.setMethodCallHandler((MethodCall call) async {
       if (call.method == 'QuerySnapshot') {
-        final QuerySnapshot snapshot = QuerySnapshot._(call.arguments, this);
-        _queryObservers[call.arguments['handle']].add(snapshot);
+        final int handle = call.arguments['handle'];
+        final QuerySnapshot snapshot = QuerySnapshot._(call.arguments, this,
+            _incrementalQuerySnapshots[handle]?.documents);
+        if (_incrementalQuerySnapshots.containsKey(handle)) {
+          _incrementalQuerySnapshots[handle] = snapshot;
+        }
+        _queryObservers[handle].add(snapshot);
       } else if (call.method == 'DocumentSnapshot') {
         final DocumentSnapshot snapshot = DocumentSnapshot._(
           call.arguments['path'],
@@ -51,9 +56,25 @@ class Firestore {
     StandardMethodCodec(FirestoreMessageCodec()),
   );
 
+  /// Delivers the pages of [Query.getDocumentPages], tagged with the handle of
+  /// the call they belong to.
+  @visibleForTesting
+  static const EventChannel documentPagesChannel = EventChannel(
+    'plugins.flutter.io/cloud_firestore/document_pages',
+    StandardMethodCodec(FirestoreMessageCodec()),
+  );
+
+  static final Stream<dynamic> _documentPages =
+      documentPagesChannel.receiveBroadcastStream();
+
   static final Map<int, StreamController<QuerySnapshot>> _queryObservers =
       <int, StreamController<QuerySnapshot>>{};
 
+  // The latest snapshot of each incremental query listener, which the next
+  // snapshot's document changes apply to.
+  static final Map<int, QuerySnapshot> _incrementalQuerySnapshots =
+      <int, QuerySnapshot>{};
+
   static final Map<int, StreamController<DocumentSnapshot>> _documentObservers =
       <int, StreamController<DocumentSnapshot>>{};
 
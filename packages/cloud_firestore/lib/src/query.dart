@@ -49,9 +49,32 @@ class Query {
   }
 
   /// Notifies of query results at this location
+  ///
+  /// With [incremental], the platform sends the documents only for the first
+  /// snapshot and then just the [QuerySnapshot.documentChanges], which are
+  /// applied to the documents of the previous snapshot. This makes updates to
+  /// large result sets cheaper. With [includeMetadataChanges], metadata-only
+  /// changes to documents are then reported as modifications.
+  ///
+  /// With [encodeInBackground], the platform prepares snapshots for Dart on a
+  /// background thread instead of its main thread, which keeps large updates
+  /// from dropping frames. Only Android supports this; elsewhere it is ignored.
+  ///
+  /// With a [coalesceInterval], at most one snapshot is delivered per interval.
+  /// Snapshots that arrive sooner are merged: only the latest is delivered,
+  /// with the [QuerySnapshot.documentChanges] of all of them, in order. This
+  /// saves channel traffic and rebuilds when many writes arrive in a burst.
+  /// Only Android supports this; elsewhere it is ignored.
   // TODO(jackson): Reduce code duplication with [DocumentReference]
-  Stream<QuerySnapshot> snapshots({bool includeMetadataChanges = false}) {
+  Stream<QuerySnapshot> snapshots(
+      {bool includeMetadataChanges = false,
+      bool incremental = false,
+      bool encodeInBackground = false,
+      Duration coalesceInterval = Duration.zero}) {
     assert(includeMetadataChanges != null);
+    assert(incremental != null);
+    assert(encodeInBackground != null);
+    assert(coalesceInterval != null && !coalesceInterval.isNegative);
     Future<int> _handle;
     // It's fine to let the StreamController be garbage collected once all the
     // subscribers have cancelled; this analyzer warning is safe to ignore.
@@ -66,10 +89,14 @@ class Query {
             'isCollectionGroup': _isCollectionGroup,
             'parameters': _parameters,
             'includeMetadataChanges': includeMetadataChanges,
+            'incremental': incremental,
+            'encodeInBackground': encodeInBackground,
+            'coalesceIntervalMillis': coalesceInterval.inMilliseconds,
           },
         ).then<int>((dynamic result) => result);
         _handle.then((int handle) {
           Firestore._queryObservers[handle] = controller;
+          if (incremental) Firestore._incrementalQuerySnapshots[handle] = null;
         });
       },
       onCancel: () {
@@ -79,6 +106,7 @@ class Query {
             <String, dynamic>{'handle': handle},
           );
           Firestore._queryObservers.remove(handle);
+          Firestore._incrementalQuerySnapshots.remove(handle);
         });
       },
     );
@@ -103,6 +131,88 @@ class Query {
     return QuerySnapshot._(data, firestore);
   }
 
+  /// Fetches the documents for this query in pages of up to [pageSize]
+  /// documents, delivering each page as soon as it arrives.
+  ///
+  /// Each page is fetched with a query that starts after the last document of
+  /// the page before, until a page comes back short or the query's [limit] is
+  /// reached. Pages have no [QuerySnapshot.documentChanges]. Cancelling the
+  /// subscription stops fetching further pages.
+  ///
+  /// Only Android supports this. On other platforms the stream ends with a
+  /// [MissingPluginException].
+  Stream<QuerySnapshot> getDocumentPages(
+      {Source source = Source.serverAndCache, int pageSize = 100}) {
+    assert(source != null);
+    assert(pageSize != null && pageSize > 0);
+    Future<int> _handle;
+    int handle;
+    bool isDone = false;
+    StreamSubscription<dynamic> pages;
+    // The controller is closed once the last page has arrived; this analyzer
+    // warning is safe to ignore.
+    StreamController<QuerySnapshot> controller; // ignore: close_sinks
+    controller = StreamController<QuerySnapshot>(
+      onListen: () {
+        // Listen first, so that no page can arrive before the handle is known.
+        pages = Firestore._documentPages.listen(
+          (dynamic event) {
+            if (event['handle'] != handle) return;
+            if (event['done'] == true) {
+              isDone = true;
+              pages.cancel();
+              controller.close();
+            } else {
+              controller.add(QuerySnapshot._(event, firestore));
+            }
+          },
+          onError: (dynamic error) {
+            if (error is! PlatformException || error.details != handle) return;
+            isDone = true;
+            pages.cancel();
+            controller.addError(error);
+            controller.close();
+          },
+        );
+        _handle = Firestore.channel.invokeMethod<int>(
+          'Query#getDocumentPages',
+          <String, dynamic>{
+            'app': firestore.app.name,
+            'path': _path,
+            'isCollectionGroup': _isCollectionGroup,
+            'parameters': _parameters,
+            'source': _getSourceString(source),
+            'pageSize': pageSize,
+          },
+        ).then<int>(
+          (int result) => handle = result,
+          onError: (dynamic error) {
+            // The pages were never started, so there is nothing to remove.
+            if (!isDone) {
+              isDone = true;
+              pages.cancel();
+              controller.addError(error);
+              controller.close();
+            }
+            return null;
+          },
+        );
+      },
+      onCancel: () {
+        pages.cancel();
+        if (isDone) return;
+        _handle.then((int handle) async {
+          if (handle == null) return;
+          await Firestore.channel.invokeMethod<void>(
+            'removeListener',
+            <String, dynamic>{'handle': handle},
+          );
+        });
+      },
+    );
+    return controller.stream;
+  }
+
   /// Obtains a CollectionReference corresponding to this query's location.
   CollectionReference reference() =>
       CollectionReference._(firestore, _pathComponents);
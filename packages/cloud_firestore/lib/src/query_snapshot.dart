@@ -6,30 +6,41 @@ part of cloud_firestore;
 
 /// A QuerySnapshot contains zero or more DocumentSnapshot objects.
 class QuerySnapshot {
-  QuerySnapshot._(Map<dynamic, dynamic> data, this._firestore)
-      : documents = List<DocumentSnapshot>.generate(data['documents'].length,
+  /// Without documents in [data], the document changes are applied to
+  /// [previousDocuments].
+  factory QuerySnapshot._(Map<dynamic, dynamic> data, Firestore firestore,
+      [List<DocumentSnapshot> previousDocuments]) {
+    final List<DocumentChange> documentChanges = List<DocumentChange>.generate(
+        data['documentChanges'].length, (int index) {
+      return DocumentChange._(data['documentChanges'][index], firestore);
+    });
+    final List<DocumentSnapshot> documents = data['documents'] == null
+        ? _applyDocumentChanges(previousDocuments, documentChanges)
+        : List<DocumentSnapshot>.generate(data['documents'].length,
             (int index) {
-          return DocumentSnapshot._(
-            data['paths'][index],
-            _asStringKeyedMap(data['documents'][index]),
-            SnapshotMetadata._(
-              data['metadatas'][index]['hasPendingWrites'],
-              data['metadatas'][index]['isFromCache'],
-            ),
-            _firestore,
-          );
-        }),
-        documentChanges = List<DocumentChange>.generate(
-            data['documentChanges'].length, (int index) {
-          return DocumentChange._(
-            data['documentChanges'][index],
-            _firestore,
-          );
-        }),
-        metadata = SnapshotMetadata._(
-          data['metadata']['hasPendingWrites'],
-          data['metadata']['isFromCache'],
-        );
+            return DocumentSnapshot._(
+              data['paths'][index],
+              _asStringKeyedMap(data['documents'][index]),
+              SnapshotMetadata._(
+                data['metadatas'][index]['hasPendingWrites'],
+                data['metadatas'][index]['isFromCache'],
+              ),
+              firestore,
+            );
+          });
+    return QuerySnapshot._withDocuments(
+      documents,
+      documentChanges,
+      SnapshotMetadata._(
+        data['metadata']['hasPendingWrites'],
+        data['metadata']['isFromCache'],
+      ),
+      firestore,
+    );
+  }
+
+  QuerySnapshot._withDocuments(
+      this.documents, this.documentChanges, this.metadata, this._firestore);
 
   /// Gets a list of all the documents included in this snapshot
   final List<DocumentSnapshot> documents;
@@ -41,4 +52,20 @@ class QuerySnapshot {
   final SnapshotMetadata metadata;
 
   final Firestore _firestore;
+
+  static List<DocumentSnapshot> _applyDocumentChanges(
+      List<DocumentSnapshot> documents, List<DocumentChange> changes) {
+    // Copied, as the previous snapshot's documents may still be in use.
+    final List<DocumentSnapshot> result =
+        List<DocumentSnapshot>.from(documents ?? <DocumentSnapshot>[]);
+    for (DocumentChange change in changes) {
+      if (change.oldIndex != -1) {
+        result.removeAt(change.oldIndex);
+      }
+      if (change.newIndex != -1) {
+        result.insert(change.newIndex, change.document);
+      }
+    }
+    return result;
+  }
 }
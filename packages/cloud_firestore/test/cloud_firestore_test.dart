@@ -101,6 +101,34 @@ void main() {
               );
             });
             return handle;
+          case 'Query#getDocumentPages':
+            final int handle = mockHandleId++;
+            // Wait before sending the pages back, as the platform does.
+            Future<void>.delayed(Duration.zero).then<void>((_) {
+              final List<dynamic> events = <dynamic>[
+                <String, dynamic>{
+                  'handle': handle,
+                  'paths': <String>["${methodCall.arguments['path']}/0"],
+                  'documents': <dynamic>[kMockDocumentSnapshotData],
+                  'metadatas': <Map<String, dynamic>>[kMockSnapshotMetadata],
+                  'metadata': kMockSnapshotMetadata,
+                  'documentChanges': <dynamic>[],
+                },
+                <String, dynamic>{'handle': handle, 'done': true},
+              ];
+              for (dynamic event in events) {
+                // TODO(hterkelsen): Remove this when defaultBinaryMessages is in stable.
+                // https://github.com/flutter/flutter/issues/33446
+                // ignore: deprecated_member_use
+                BinaryMessages.handlePlatformMessage(
+                  Firestore.documentPagesChannel.name,
+                  Firestore.documentPagesChannel.codec
+                      .encodeSuccessEnvelope(event),
+                  (_) {},
+                );
+              }
+            });
+            return handle;
           case 'Query#getDocuments':
             return <String, dynamic>{
               'paths': <String>["${methodCall.arguments['path']}/0"],
@@ -163,6 +191,10 @@ void main() {
             return null;
         }
       });
+      MethodChannel(
+        Firestore.documentPagesChannel.name,
+        Firestore.documentPagesChannel.codec,
+      ).setMockMethodCallHandler((MethodCall methodCall) async => null);
       log.clear();
     });
 
@@ -351,6 +383,9 @@ void main() {
                 'orderBy': <List<dynamic>>[],
               },
               'includeMetadataChanges': true,
+              'incremental': false,
+              'encodeInBackground': false,
+              'coalesceIntervalMillis': 0,
             },
           ),
           isMethodCall(
@@ -359,6 +394,57 @@ void main() {
           ),
         ]);
       });
+      test('listen incrementally', () async {
+        final Stream<QuerySnapshot> stream =
+            collectionReference.snapshots(incremental: true);
+        final Future<List<QuerySnapshot>> snapshots = stream.take(2).toList();
+        await stream.first;
+        // TODO(hterkelsen): Remove this when defaultBinaryMessages is in stable.
+        // https://github.com/flutter/flutter/issues/33446
+        // ignore: deprecated_member_use
+        await BinaryMessages.handlePlatformMessage(
+          Firestore.channel.name,
+          Firestore.channel.codec.encodeMethodCall(
+            MethodCall('QuerySnapshot', <String, dynamic>{
+              'app': app.name,
+              'handle': 0,
+              'metadata': kMockSnapshotMetadata,
+              'documentChanges': <dynamic>[
+                <String, dynamic>{
+                  'oldIndex': 0,
+                  'newIndex': 0,
+                  'type': 'DocumentChangeType.modified',
+                  'document': <String, dynamic>{'1': 3},
+                  'path': 'foo/0',
+                  'metadata': kMockSnapshotMetadata,
+                },
+                <String, dynamic>{
+                  'oldIndex': -1,
+                  'newIndex': 1,
+                  'type': 'DocumentChangeType.added',
+                  'document': <String, dynamic>{'1': 4},
+                  'path': 'foo/1',
+                  'metadata': kMockSnapshotMetadata,
+                },
+              ],
+            }),
+          ),
+          (_) {},
+        );
+        final List<QuerySnapshot> results = await snapshots;
+        expect(results[0].documents, hasLength(1));
+        expect(results[0].documents[0].data, equals(kMockDocumentSnapshotData));
+        final List<DocumentSnapshot> documents = results[1].documents;
+        expect(documents, hasLength(2));
+        expect(documents[0].reference.path, equals('foo/0'));
+        expect(documents[0].data, equals(<String, dynamic>{'1': 3}));
+        expect(documents[1].reference.path, equals('foo/1'));
+        expect(documents[1].data, equals(<String, dynamic>{'1': 4}));
+        expect(results[1].documentChanges, hasLength(2));
+        expect(results[1].documentChanges[0].document, same(documents[0]));
+        expect(results[1].documentChanges[1].document, same(documents[1]));
+        expect(log[0].arguments['incremental'], isTrue);
+      });
       test('where', () async {
         final StreamSubscription<QuerySnapshot> subscription =
             collectionReference
@@ -383,6 +469,9 @@ void main() {
                   'orderBy': <List<dynamic>>[],
                 },
                 'includeMetadataChanges': false,
+                'incremental': false,
+                'encodeInBackground': false,
+                'coalesceIntervalMillis': 0,
               },
             ),
             isMethodCall(
@@ -416,6 +505,9 @@ void main() {
                   'orderBy': <List<dynamic>>[],
                 },
                 'includeMetadataChanges': false,
+                'incremental': false,
+                'encodeInBackground': false,
+                'coalesceIntervalMillis': 0,
               },
             ),
             isMethodCall(
@@ -449,6 +541,9 @@ void main() {
                   ],
                 },
                 'includeMetadataChanges': false,
+                'incremental': false,
+                'encodeInBackground': false,
+                'coalesceIntervalMillis': 0,
               },
             ),
             isMethodCall(
@@ -480,6 +575,7 @@ void main() {
                 'app': app.name,
                 'path': 'path/to/foo',
                 'includeMetadataChanges': true,
+                'encodeInBackground': false,
               },
             ),
             isMethodCall(
@@ -793,6 +889,42 @@ void main() {
           ),
         );
       });
+      test('getDocumentPages', () async {
+        final List<QuerySnapshot> pages =
+            await collectionReference.getDocumentPages(pageSize: 10).toList();
+        expect(pages, hasLength(1));
+        final DocumentSnapshot document = pages[0].documents[0];
+        expect(document.reference.path, equals('foo/0'));
+        expect(document.data, equals(kMockDocumentSnapshotData));
+        expect(pages[0].documentChanges, isEmpty);
+        expect(log, <Matcher>[
+          isMethodCall(
+            'Query#getDocumentPages',
+            arguments: <String, dynamic>{
+              'app': app.name,
+              'path': 'foo',
+              'isCollectionGroup': false,
+              'parameters': <String, dynamic>{
+                'where': <List<dynamic>>[],
+                'orderBy': <List<dynamic>>[],
+              },
+              'source': 'default',
+              'pageSize': 10,
+            },
+          ),
+        ]);
+      });
+      test('getDocumentPages without platform support', () async {
+        Firestore.channel.setMockMethodCallHandler((MethodCall methodCall) async {
+          log.add(methodCall);
+          throw MissingPluginException();
+        });
+        await expectLater(
+          collectionReference.getDocumentPages(pageSize: 10).toList(),
+          throwsA(const TypeMatcher<MissingPluginException>()),
+        );
+        expect(log, hasLength(1));
+      });
       test('getDocumentsFromCollectionGroup', () async {
         QuerySnapshot snapshot = await collectionGroupQuery.getDocuments();
         expect(snapshot.metadata.hasPendingWrites,
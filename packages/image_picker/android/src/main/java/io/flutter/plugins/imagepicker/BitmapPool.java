@@ -0,0 +1,96 @@
+// Copyright 2017 The Chromium Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.imagepicker;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Keeps a few mutable bitmaps around so that decodes can reuse their memory through {@link
+ * android.graphics.BitmapFactory.Options#inBitmap} instead of allocating a fresh bitmap per image.
+ *
+ * <p>Reuse across sizes needs {@link Build.VERSION_CODES#KITKAT} or later, where any
+ * bitmap with a large enough allocation can be decoded into.
+ */
+@TargetApi(Build.VERSION_CODES.KITKAT)
+class BitmapPool {
+    private final int maxBitmaps;
+    private final long maxBytes;
+    private final LinkedList<Bitmap> bitmaps = new LinkedList<>();
+    private long bytes;
+
+    BitmapPool(int maxBitmaps, long maxBytes) {
+        this.maxBitmaps = maxBitmaps;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Takes the smallest pooled bitmap that can hold an image of the given size, or returns null
+     * if none can.
+     */
+    synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        long needed = (long) width * height * bytesPerPixel(config);
+        Bitmap best = null;
+        for (Bitmap bitmap : bitmaps) {
+            int size = bitmap.getAllocationByteCount();
+            if (size >= needed && (best == null || size < best.getAllocationByteCount())) {
+                best = bitmap;
+            }
+        }
+        if (best != null) {
+            bitmaps.remove(best);
+            bytes -= best.getAllocationByteCount();
+        }
+        return best;
+    }
+
+    /**
+     * Hands a bitmap that is no longer used to the pool. Bitmaps that cannot be reused, or that
+     * would take the pool over its budget, are recycled, as are the oldest ones to make room.
+     */
+    synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        int size = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || size > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        bitmaps.addLast(bitmap);
+        bytes += size;
+
+        Iterator<Bitmap> oldest = bitmaps.iterator();
+        while (bitmaps.size() > maxBitmaps || bytes > maxBytes) {
+            Bitmap evicted = oldest.next();
+            oldest.remove();
+            bytes -= evicted.getAllocationByteCount();
+            evicted.recycle();
+        }
+    }
+
+    /** Recycles every pooled bitmap, giving their memory back until the next decode. */
+    synchronized void clear() {
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+        bitmaps.clear();
+        bytes = 0;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 4;
+    }
+}
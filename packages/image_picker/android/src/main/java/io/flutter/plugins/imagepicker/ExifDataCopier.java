@@ -4,49 +4,261 @@
 
 package io.flutter.plugins.imagepicker;
 
+import android.annotation.TargetApi;
 import android.media.ExifInterface;
+import android.os.Build;
 import android.util.Log;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Carries Exif data over from a picked image to its resized copy.
+ *
+ * <p>For JPEGs, {@link #readExifSegment} reads the source's Exif segment as is, and {@link
+ * #injectExif} writes it into the resized JPEG while that is being encoded, so the output is written
+ * only once. Other images fall back to {@link #copyExif}, which copies the main attributes with
+ * {@link ExifInterface} once the output is written, and so rewrites it.
+ */
 class ExifDataCopier {
+  private static final int MARKER_SOI = 0xD8;
+  private static final int MARKER_SOS = 0xDA;
+  private static final int MARKER_EOI = 0xD9;
+  private static final int MARKER_APP1 = 0xE1;
+  private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+  private static final int TAG_IMAGE_WIDTH = 0x0100;
+  private static final int TAG_IMAGE_LENGTH = 0x0101;
+  private static final int TAG_EXIF_IFD_POINTER = 0x8769;
+  private static final int TAG_PIXEL_X_DIMENSION = 0xA002;
+  private static final int TAG_PIXEL_Y_DIMENSION = 0xA003;
+  private static final int TYPE_SHORT = 3;
+  private static final int TYPE_LONG = 4;
+
+  /**
+   * Reads the Exif (APP1) segment of a JPEG, marker and length included, without moving the
+   * descriptor's position.
+   *
+   * @return the segment, or null if the JPEG has none
+   */
+  byte[] readExifSegment(FileDescriptor jpeg) throws IOException {
+    // The input stream is not closed, as it would close the descriptor its caller owns.
+    FileChannel channel = new FileInputStream(jpeg).getChannel();
+    ByteBuffer marker = ByteBuffer.allocate(4);
+    if (!readFully(channel, marker, 0, 2)
+        || (marker.get(0) & 0xFF) != 0xFF
+        || (marker.get(1) & 0xFF) != MARKER_SOI) {
+      return null;
+    }
+
+    long position = 2;
+    while (readFully(channel, marker, position, 4)) {
+      if ((marker.get(0) & 0xFF) != 0xFF) {
+        return null;
+      }
+      int type = marker.get(1) & 0xFF;
+      int length = marker.getShort(2) & 0xFFFF;
+      if (type == MARKER_SOS || type == MARKER_EOI || length < 2) {
+        // Metadata only comes before the image data.
+        return null;
+      }
+      if (type == MARKER_APP1 && length >= 2 + EXIF_HEADER.length) {
+        ByteBuffer segment = ByteBuffer.allocate(2 + length);
+        if (!readFully(channel, segment, position, segment.capacity())) {
+          return null;
+        }
+        byte[] bytes = segment.array();
+        if (startsWith(bytes, 4, EXIF_HEADER)) {
+          return bytes;
+        }
+      }
+      position += 2 + length;
+    }
+    return null;
+  }
+
+  /**
+   * Returns a stream that writes the given Exif segment into the JPEG written through it, right
+   * after its start-of-image marker. The segment's image dimensions are updated to the given ones.
+   */
+  OutputStream injectExif(OutputStream jpeg, byte[] exifSegment, int width, int height) {
+    byte[] segment = exifSegment.clone();
+    updateDimensions(segment, width, height);
+    return new ExifInjectingOutputStream(jpeg, segment);
+  }
+
   void copyExif(String filePathOri, String filePathDest) {
     try {
-      ExifInterface oldExif = new ExifInterface(filePathOri);
-      ExifInterface newExif = new ExifInterface(filePathDest);
-
-      List<String> attributes =
-          Arrays.asList(
-              "FNumber",
-              "ExposureTime",
-              "ISOSpeedRatings",
-              "GPSAltitude",
-              "GPSAltitudeRef",
-              "FocalLength",
-              "GPSDateStamp",
-              "WhiteBalance",
-              "GPSProcessingMethod",
-              "GPSTimeStamp",
-              "DateTime",
-              "Flash",
-              "GPSLatitude",
-              "GPSLatitudeRef",
-              "GPSLongitude",
-              "GPSLongitudeRef",
-              "Make",
-              "Model",
-              "Orientation");
-      for (String attribute : attributes) {
-        setIfNotNull(oldExif, newExif, attribute);
-      }
-
-      newExif.saveAttributes();
+      copyExif(new ExifInterface(filePathOri), filePathDest);
+    } catch (Exception ex) {
+      Log.e("ExifDataCopier", "Error preserving Exif data on selected image: " + ex);
+    }
+  }
 
+  /** Copies Exif data from an image that is only open as a file descriptor. */
+  @TargetApi(Build.VERSION_CODES.N)
+  void copyExif(FileDescriptor fileDescriptorOri, String filePathDest) {
+    try {
+      copyExif(new ExifInterface(fileDescriptorOri), filePathDest);
     } catch (Exception ex) {
       Log.e("ExifDataCopier", "Error preserving Exif data on selected image: " + ex);
     }
   }
 
+  private static void copyExif(ExifInterface oldExif, String filePathDest) throws IOException {
+    ExifInterface newExif = new ExifInterface(filePathDest);
+
+    List<String> attributes =
+        Arrays.asList(
+            "FNumber",
+            "ExposureTime",
+            "ISOSpeedRatings",
+            "GPSAltitude",
+            "GPSAltitudeRef",
+            "FocalLength",
+            "GPSDateStamp",
+            "WhiteBalance",
+            "GPSProcessingMethod",
+            "GPSTimeStamp",
+            "DateTime",
+            "Flash",
+            "GPSLatitude",
+            "GPSLatitudeRef",
+            "GPSLongitude",
+            "GPSLongitudeRef",
+            "Make",
+            "Model",
+            "Orientation");
+    for (String attribute : attributes) {
+      setIfNotNull(oldExif, newExif, attribute);
+    }
+
+    newExif.saveAttributes();
+  }
+
+  /**
+   * Rewrites the width and height tags of an Exif segment in place. The segment is left as is where
+   * it does not look as expected; the tags are informational only.
+   */
+  private static void updateDimensions(byte[] segment, int width, int height) {
+    int tiff = 4 + EXIF_HEADER.length;
+    if (segment.length < tiff + 8) {
+      return;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(segment);
+    if (segment[tiff] == 'I' && segment[tiff + 1] == 'I') {
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+    } else if (segment[tiff] != 'M' || segment[tiff + 1] != 'M') {
+      return;
+    }
+
+    int ifd0 = tiff + buffer.getInt(tiff + 4);
+    updateTag(buffer, ifd0, TAG_IMAGE_WIDTH, width);
+    updateTag(buffer, ifd0, TAG_IMAGE_LENGTH, height);
+    int exifIfdEntry = findTag(buffer, ifd0, TAG_EXIF_IFD_POINTER);
+    if (exifIfdEntry >= 0) {
+      int exifIfd = tiff + buffer.getInt(exifIfdEntry + 8);
+      updateTag(buffer, exifIfd, TAG_PIXEL_X_DIMENSION, width);
+      updateTag(buffer, exifIfd, TAG_PIXEL_Y_DIMENSION, height);
+    }
+  }
+
+  /** Returns the offset of the tag's entry in the IFD at the given offset, or -1. */
+  private static int findTag(ByteBuffer buffer, int ifd, int tag) {
+    if (ifd < 0 || ifd + 2 > buffer.limit()) {
+      return -1;
+    }
+    int count = buffer.getShort(ifd) & 0xFFFF;
+    for (int i = 0; i < count; i++) {
+      int entry = ifd + 2 + 12 * i;
+      if (entry + 12 > buffer.limit()) {
+        return -1;
+      }
+      if ((buffer.getShort(entry) & 0xFFFF) == tag) {
+        return entry;
+      }
+    }
+    return -1;
+  }
+
+  private static void updateTag(ByteBuffer buffer, int ifd, int tag, int value) {
+    int entry = findTag(buffer, ifd, tag);
+    if (entry < 0 || buffer.getInt(entry + 4) != 1) {
+      return;
+    }
+    int type = buffer.getShort(entry + 2) & 0xFFFF;
+    if (type == TYPE_SHORT && value <= 0xFFFF) {
+      buffer.putShort(entry + 8, (short) value);
+    } else if (type == TYPE_LONG) {
+      buffer.putInt(entry + 8, value);
+    }
+  }
+
+  private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position, int length)
+      throws IOException {
+    buffer.clear();
+    buffer.limit(length);
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean startsWith(byte[] bytes, int offset, byte[] prefix) {
+    if (bytes.length < offset + prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (bytes[offset + i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Passes a JPEG through, writing an extra segment after its first two bytes, the SOI marker. */
+  private static class ExifInjectingOutputStream extends FilterOutputStream {
+    private final byte[] segment;
+    private int written;
+
+    ExifInjectingOutputStream(OutputStream out, byte[] segment) {
+      super(out);
+      this.segment = segment;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (written < 2) {
+        int head = Math.min(len, 2 - written);
+        out.write(b, off, head);
+        written += head;
+        off += head;
+        len -= head;
+        if (written == 2) {
+          out.write(segment);
+        }
+      }
+      if (len > 0) {
+        out.write(b, off, len);
+      }
+    }
+  }
+
   private static void setIfNotNull(ExifInterface oldExif, ExifInterface newExif, String property) {
     if (oldExif.getAttribute(property) != null) {
       newExif.setAttribute(property, oldExif.getAttribute(property));
@@ -26,14 +26,18 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
+import android.os.ParcelFileDescriptor;
 import android.provider.DocumentsContract;
 import android.provider.MediaStore;
 import android.text.TextUtils;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 class FileUtils {
 
@@ -45,6 +49,52 @@ class FileUtils {
     return path;
   }
 
+  /**
+   * Opens a URI that has no local path, so that it can be decoded straight from its file descriptor
+   * instead of being copied first.
+   *
+   * @return the descriptor, to be closed by the caller, or null if the URI has a local path or its
+   *     content cannot be read at random, like a pipe
+   */
+  ParcelFileDescriptor openRemoteFileDescriptor(final Context context, final Uri uri) {
+    if (getPathFromLocalUri(context, uri) != null) {
+      return null;
+    }
+    ParcelFileDescriptor descriptor = openFileDescriptor(context, uri);
+    if (descriptor != null && descriptor.getStatSize() < 0) {
+      closeQuietly(descriptor);
+      return null;
+    }
+    return descriptor;
+  }
+
+  /**
+   * Returns when the document behind the URI was last modified, in milliseconds since the epoch, or
+   * -1 if its provider does not say.
+   */
+  @SuppressLint("InlinedApi")
+  long getLastModified(final Context context, final Uri uri) {
+    final String column = DocumentsContract.Document.COLUMN_LAST_MODIFIED;
+    Cursor cursor = null;
+    try {
+      cursor = context.getContentResolver().query(uri, new String[] {column}, null, null, null);
+      if (cursor != null && cursor.moveToFirst()) {
+        final int columnIndex = cursor.getColumnIndex(column);
+        if (columnIndex != -1 && !cursor.isNull(columnIndex)) {
+          return cursor.getLong(columnIndex);
+        }
+      }
+    } catch (RuntimeException e) {
+      // Providers that do not know the column may reject the query.
+      return -1;
+    } finally {
+      if (cursor != null) {
+        cursor.close();
+      }
+    }
+    return -1;
+  }
+
   @SuppressLint("NewApi")
   private String getPathFromLocalUri(final Context context, final Uri uri) {
     final boolean isKitKat = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
@@ -134,15 +184,75 @@ class FileUtils {
   }
 
   private static String getPathFromRemoteUri(final Context context, final Uri uri) {
-    // The code below is why Java now has try-with-resources and the Files utility.
     File file = null;
+    try {
+      file = File.createTempFile("image_picker", getImageExtension(uri), context.getCacheDir());
+    } catch (IOException ignored) {
+      return null;
+    }
+
+    ParcelFileDescriptor descriptor = openFileDescriptor(context, uri);
+    if (descriptor != null) {
+      try {
+        if (descriptor.getStatSize() >= 0 && transfer(descriptor, file)) {
+          return file.getPath();
+        }
+      } finally {
+        closeQuietly(descriptor);
+      }
+    }
+
+    // Content that is streamed, through a pipe for instance, can only be read in order.
+    return copyFromInputStream(context, uri, file) ? file.getPath() : null;
+  }
+
+  private static ParcelFileDescriptor openFileDescriptor(final Context context, final Uri uri) {
+    try {
+      return context.getContentResolver().openFileDescriptor(uri, "r");
+    } catch (FileNotFoundException | SecurityException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Copies the content behind the descriptor into the file with {@link FileChannel#transferTo},
+   * which lets the kernel move the bytes without them passing through the Java heap.
+   */
+  private static boolean transfer(ParcelFileDescriptor descriptor, File file) {
+    // The input stream is not closed, as it would close the descriptor its caller owns.
+    FileChannel source = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+    FileOutputStream outputStream = null;
+    try {
+      outputStream = new FileOutputStream(file);
+      FileChannel target = outputStream.getChannel();
+      long size = source.size();
+      long position = 0;
+      while (position < size) {
+        long transferred = source.transferTo(position, size - position, target);
+        if (transferred <= 0) {
+          return false;
+        }
+        position += transferred;
+      }
+      return true;
+    } catch (IOException e) {
+      return false;
+    } finally {
+      try {
+        if (outputStream != null) outputStream.close();
+      } catch (IOException ignored) {
+        return false;
+      }
+    }
+  }
+
+  private static boolean copyFromInputStream(final Context context, final Uri uri, File file) {
+    // The code below is why Java now has try-with-resources and the Files utility.
     InputStream inputStream = null;
     OutputStream outputStream = null;
     boolean success = false;
     try {
-      String extension = getImageExtension(uri);
       inputStream = context.getContentResolver().openInputStream(uri);
-      file = File.createTempFile("image_picker", extension, context.getCacheDir());
       outputStream = new FileOutputStream(file);
       if (inputStream != null) {
         copy(inputStream, outputStream);
@@ -163,11 +273,18 @@ class FileUtils {
         success = false;
       }
     }
-    return success ? file.getPath() : null;
+    return success;
+  }
+
+  private static void closeQuietly(ParcelFileDescriptor descriptor) {
+    try {
+      descriptor.close();
+    } catch (IOException ignored) {
+    }
   }
 
   /** @return extension of image with dot, or default .jpg if it none. */
-  private static String getImageExtension(Uri uriImage) {
+  static String getImageExtension(Uri uriImage) {
     String extension = null;
 
     try {
@@ -188,7 +305,7 @@ class FileUtils {
   }
 
   private static void copy(InputStream in, OutputStream out) throws IOException {
-    final byte[] buffer = new byte[4 * 1024];
+    final byte[] buffer = new byte[64 * 1024];
     int bytesRead;
     while ((bytesRead = in.read(buffer)) != -1) {
       out.write(buffer, 0, bytesRead);
@@ -18,7 +18,10 @@ class ImagePickerCache {
   static final String MAP_KEY_MAX_WIDTH = "maxWidth";
   static final String MAP_KEY_MAX_HEIGHT = "maxHeight";
   static final String MAP_KEY_IMAGE_QUALITY = "imageQuality";
-  private static final String MAP_KEY_TYPE = "type";
+  static final String MAP_KEY_MAX_GIF_FRAME_RATE = "maxGifFrameRate";
+  static final String MAP_KEY_MAX_VIDEO_BITRATE = "maxVideoBitrate";
+  static final String MAP_KEY_MAX_VIDEO_HEIGHT = "maxVideoHeight";
+  static final String MAP_KEY_TYPE = "type";
   private static final String MAP_KEY_ERROR_CODE = "errorCode";
   private static final String MAP_KEY_ERROR_MESSAGE = "errorMessage";
 
@@ -31,6 +34,12 @@ class ImagePickerCache {
   private static final String SHARED_PREFERENCE_MAX_HEIGHT_KEY = "flutter_image_picker_max_height";
   private static final String SHARED_PREFERENCE_IMAGE_QUALITY_KEY =
       "flutter_image_picker_image_quality";
+  private static final String SHARED_PREFERENCE_MAX_GIF_FRAME_RATE_KEY =
+      "flutter_image_picker_max_gif_frame_rate";
+  private static final String SHARED_PREFERENCE_MAX_VIDEO_BITRATE_KEY =
+      "flutter_image_picker_max_video_bitrate";
+  private static final String SHARED_PREFERENCE_MAX_VIDEO_HEIGHT_KEY =
+      "flutter_image_picker_max_video_height";
   private static final String SHARED_PREFERENCE_TYPE_KEY = "flutter_image_picker_type";
   private static final String SHARED_PREFERENCE_PENDING_IMAGE_URI_PATH_KEY =
       "flutter_image_picker_pending_image_uri";
@@ -62,11 +71,13 @@ class ImagePickerCache {
         methodCall.argument(MAP_KEY_IMAGE_QUALITY) == null
             ? 100
             : (int) methodCall.argument(MAP_KEY_IMAGE_QUALITY);
+    Integer maxGifFrameRate = methodCall.argument(MAP_KEY_MAX_GIF_FRAME_RATE);
 
-    setMaxDimension(maxWidth, maxHeight, imageQuality);
+    setMaxDimension(maxWidth, maxHeight, imageQuality, maxGifFrameRate);
   }
 
-  private void setMaxDimension(Double maxWidth, Double maxHeight, int imageQuality) {
+  private void setMaxDimension(
+      Double maxWidth, Double maxHeight, int imageQuality, Integer maxGifFrameRate) {
     SharedPreferences.Editor editor = prefs.edit();
     if (maxWidth != null) {
       editor.putLong(SHARED_PREFERENCE_MAX_WIDTH_KEY, Double.doubleToRawLongBits(maxWidth));
@@ -79,6 +90,21 @@ class ImagePickerCache {
     } else {
       editor.putInt(SHARED_PREFERENCE_IMAGE_QUALITY_KEY, 100);
     }
+    if (maxGifFrameRate != null) {
+      editor.putInt(SHARED_PREFERENCE_MAX_GIF_FRAME_RATE_KEY, maxGifFrameRate);
+    }
+    editor.apply();
+  }
+
+  /** Saves the limits a picked video is transcoded to, so the transcode can be redone. */
+  void saveVideoLimits(@Nullable Integer maxVideoBitrate, @Nullable Integer maxVideoHeight) {
+    SharedPreferences.Editor editor = prefs.edit();
+    if (maxVideoBitrate != null) {
+      editor.putInt(SHARED_PREFERENCE_MAX_VIDEO_BITRATE_KEY, maxVideoBitrate);
+    }
+    if (maxVideoHeight != null) {
+      editor.putInt(SHARED_PREFERENCE_MAX_VIDEO_HEIGHT_KEY, maxVideoHeight);
+    }
     editor.apply();
   }
 
@@ -147,9 +173,21 @@ class ImagePickerCache {
       }
       if (prefs.contains(SHARED_PREFERENCE_IMAGE_QUALITY_KEY)) {
         final int imageQuality = prefs.getInt(SHARED_PREFERENCE_IMAGE_QUALITY_KEY, 100);
-        resultMap.put(MAP_KEY_MAX_HEIGHT, imageQuality);
+        resultMap.put(MAP_KEY_IMAGE_QUALITY, imageQuality);
       } else {
-        resultMap.put(MAP_KEY_MAX_HEIGHT, 100);
+        resultMap.put(MAP_KEY_IMAGE_QUALITY, 100);
+      }
+      if (prefs.contains(SHARED_PREFERENCE_MAX_GIF_FRAME_RATE_KEY)) {
+        resultMap.put(
+            MAP_KEY_MAX_GIF_FRAME_RATE, prefs.getInt(SHARED_PREFERENCE_MAX_GIF_FRAME_RATE_KEY, 0));
+      }
+      if (prefs.contains(SHARED_PREFERENCE_MAX_VIDEO_BITRATE_KEY)) {
+        resultMap.put(
+            MAP_KEY_MAX_VIDEO_BITRATE, prefs.getInt(SHARED_PREFERENCE_MAX_VIDEO_BITRATE_KEY, 0));
+      }
+      if (prefs.contains(SHARED_PREFERENCE_MAX_VIDEO_HEIGHT_KEY)) {
+        resultMap.put(
+            MAP_KEY_MAX_VIDEO_HEIGHT, prefs.getInt(SHARED_PREFERENCE_MAX_VIDEO_HEIGHT_KEY, 0));
       }
     }
 
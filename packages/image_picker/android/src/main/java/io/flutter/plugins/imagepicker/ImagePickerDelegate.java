@@ -6,26 +6,39 @@ package io.flutter.plugins.imagepicker;
 
 import android.Manifest;
 import android.app.Activity;
+import android.content.ClipData;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.media.MediaScannerConnection;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
 import android.provider.MediaStore;
+import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.FileProvider;
 
+import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.PluginRegistry;
+import io.flutter.plugins.imagepicker.video_compression.VideoTranscoder;
 
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 /**
  * A delegate class doing the heavy lifting for the plugin.
@@ -65,6 +78,25 @@ import java.util.UUID;
  * Finish with full path for the scaled image as the result.
  *
  * <p>C) User cancels picking an image. Finish with null result.
+ *
+ * <p>Resizing in B) decodes, scales and re-encodes the image, which can take seconds for large
+ * photos and GIFs, so it runs on a background executor. The result is finished back on the main
+ * thread. Images picked from the gallery that have no local path, such as ones from a cloud
+ * provider, are decoded straight from their file descriptor where possible, rather than copied
+ * to a file first.
+ *
+ * <p>{@link #chooseMultiImageFromGallery} lets the user pick several images at once. Its results
+ * go to an {@link EventChannel.EventSink} instead: the picked images are resized in parallel on the
+ * background executor, each path is sent as soon as its image is done, and the stream ends once
+ * all of them are. Images only start resizing while their estimated memory use fits a budget
+ * shared by all resizes. Unlike single picks, a multi-image pick is not recovered if the
+ * activity is destroyed.
+ *
+ * <p>A picked video is transcoded on the background executor when {@code pickVideo()} was given a
+ * maxVideoBitrate or maxVideoHeight it exceeds, with its progress sent to the sink set with {@link
+ * #setVideoProgressSink}. The source path and limits are saved to the {@link ImagePickerCache}
+ * while it runs, so {@link #retrieveLostImage} can redo the transcode if the app is killed. If the
+ * video cannot be transcoded, it is returned as is.
  */
 public class ImagePickerDelegate
         implements PluginRegistry.ActivityResultListener,
@@ -78,6 +110,10 @@ public class ImagePickerDelegate
     @VisibleForTesting
     static final int REQUEST_CAMERA_IMAGE_PERMISSION = 2345;
     @VisibleForTesting
+    static final int REQUEST_CODE_CHOOSE_MULTI_IMAGE_FROM_GALLERY = 2346;
+    @VisibleForTesting
+    static final int REQUEST_EXTERNAL_MULTI_IMAGE_STORAGE_PERMISSION = 2347;
+    @VisibleForTesting
     static final int REQUEST_CODE_CHOOSE_VIDEO_FROM_GALLERY = 2352;
     @VisibleForTesting
     static final int REQUEST_CODE_TAKE_VIDEO_WITH_CAMERA = 2353;
@@ -86,6 +122,13 @@ public class ImagePickerDelegate
     @VisibleForTesting
     static final int REQUEST_CAMERA_VIDEO_PERMISSION = 2355;
 
+    // Images are resized on up to this many threads at once.
+    private static final int RESIZE_THREADS =
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    // Memory the images of a multi-image pick may take up while being resized, in kilobytes.
+    private static final int RESIZE_MEMORY_BUDGET_KB =
+            (int) (Runtime.getRuntime().maxMemory() / 4 / 1024);
+
     @VisibleForTesting
     final String fileProviderName;
 
@@ -97,6 +140,19 @@ public class ImagePickerDelegate
     private final IntentResolver intentResolver;
     private final FileUriResolver fileUriResolver;
     private final FileUtils fileUtils;
+    private final Executor backgroundExecutor;
+    // Transcodes run one at a time on their own thread, so that a long video neither takes a resize
+    // thread for minutes nor competes with other transcodes for the codecs.
+    private final Executor videoExecutor;
+    private final Executor mainThreadExecutor;
+    private final VideoTranscoderFactory videoTranscoderFactory;
+    private final Semaphore resizeMemoryBudget = new Semaphore(RESIZE_MEMORY_BUDGET_KB, true);
+
+    // The videos being transcoded and who waits for each, by source path and limits. Shared by all
+    // delegates, as one created for a new activity may retrieve a video an earlier one is still
+    // transcoding. Only used on the main thread.
+    private static final Map<String, List<OnPathReadyListener>> transcodesInFlight =
+            new HashMap<>();
 
     interface PermissionManager {
         boolean isPermissionGranted(String permissionName);
@@ -120,9 +176,20 @@ public class ImagePickerDelegate
         void onPathReady(String path);
     }
 
+    interface VideoTranscoderFactory {
+        VideoTranscoder create(Integer maxBitrate, Integer maxHeight);
+    }
+
     private Uri pendingCameraMediaUri;
     private MethodChannel.Result pendingResult;
     private MethodCall methodCall;
+    // True from the start of a multi-image pick until its last image is done, even once nobody
+    // listens to the results anymore.
+    private boolean multiImageActive;
+    private EventChannel.EventSink pendingMultiImageEvents;
+    private Map<String, Object> multiImageArguments;
+    private int pendingMultiImageCount;
+    private EventChannel.EventSink videoProgressEvents;
 
     public ImagePickerDelegate(
             final Activity activity,
@@ -179,7 +246,23 @@ public class ImagePickerDelegate
                                 });
                     }
                 },
-                new FileUtils());
+                new FileUtils(),
+                new VideoTranscoderFactory() {
+                    @Override
+                    public VideoTranscoder create(Integer maxBitrate, Integer maxHeight) {
+                        return new VideoTranscoder(maxBitrate, maxHeight);
+                    }
+                },
+                Executors.newFixedThreadPool(RESIZE_THREADS),
+                Executors.newSingleThreadExecutor(),
+                new Executor() {
+                    private final Handler handler = new Handler(Looper.getMainLooper());
+
+                    @Override
+                    public void execute(Runnable command) {
+                        handler.post(command);
+                    }
+                });
     }
 
     /**
@@ -197,7 +280,11 @@ public class ImagePickerDelegate
             final PermissionManager permissionManager,
             final IntentResolver intentResolver,
             final FileUriResolver fileUriResolver,
-            final FileUtils fileUtils) {
+            final FileUtils fileUtils,
+            final VideoTranscoderFactory videoTranscoderFactory,
+            final Executor backgroundExecutor,
+            final Executor videoExecutor,
+            final Executor mainThreadExecutor) {
         this.activity = activity;
         this.externalFilesDirectory = externalFilesDirectory;
         this.imageResizer = imageResizer;
@@ -208,7 +295,11 @@ public class ImagePickerDelegate
         this.intentResolver = intentResolver;
         this.fileUriResolver = fileUriResolver;
         this.fileUtils = fileUtils;
+        this.videoTranscoderFactory = videoTranscoderFactory;
         this.cache = cache;
+        this.backgroundExecutor = backgroundExecutor;
+        this.videoExecutor = videoExecutor;
+        this.mainThreadExecutor = mainThreadExecutor;
     }
 
     void saveStateBeforeResult() {
@@ -218,31 +309,98 @@ public class ImagePickerDelegate
 
         cache.saveTypeWithMethodCallName(methodCall.method);
         cache.saveDimensionWithMethodCall(methodCall);
+        if (ImagePickerPlugin.METHOD_CALL_VIDEO.equals(methodCall.method)) {
+            cache.saveVideoLimits(
+                    methodCall.<Integer>argument(ImagePickerCache.MAP_KEY_MAX_VIDEO_BITRATE),
+                    methodCall.<Integer>argument(ImagePickerCache.MAP_KEY_MAX_VIDEO_HEIGHT));
+        }
         if (pendingCameraMediaUri != null) {
             cache.savePendingCameraMediaUriPath(pendingCameraMediaUri);
         }
     }
 
-    void retrieveLostImage(MethodChannel.Result result) {
-        Map<String, Object> resultMap = cache.getCacheMap();
-        String path = (String) resultMap.get(cache.MAP_KEY_PATH);
-        if (path != null) {
-            Double maxWidth = (Double) resultMap.get(cache.MAP_KEY_MAX_WIDTH);
-            Double maxHeight = (Double) resultMap.get(cache.MAP_KEY_MAX_HEIGHT);
-            int imageQuality =
-                    resultMap.get(cache.MAP_KEY_IMAGE_QUALITY) == null
-                            ? 100
-                            : (int) resultMap.get(cache.MAP_KEY_IMAGE_QUALITY);
-
-            String newPath = imageResizer.resizeImageIfNeeded(path, maxWidth, maxHeight, imageQuality);
-            resultMap.put(cache.MAP_KEY_PATH, newPath);
+    void retrieveLostImage(final MethodChannel.Result result) {
+        final Map<String, Object> resultMap = cache.getCacheMap();
+        final String path = (String) resultMap.get(cache.MAP_KEY_PATH);
+        if (path == null) {
+            result.success(resultMap.isEmpty() ? null : resultMap);
+            cache.clear();
+            return;
         }
-        if (resultMap.isEmpty()) {
-            result.success(null);
-        } else {
-            result.success(resultMap);
+
+        if ("video".equals(resultMap.get(cache.MAP_KEY_TYPE))) {
+            Integer maxVideoBitrate = (Integer) resultMap.get(cache.MAP_KEY_MAX_VIDEO_BITRATE);
+            Integer maxVideoHeight = (Integer) resultMap.get(cache.MAP_KEY_MAX_VIDEO_HEIGHT);
+            if (maxVideoBitrate == null && maxVideoHeight == null) {
+                result.success(resultMap);
+                cache.clear();
+                return;
+            }
+            transcodeVideo(
+                    path,
+                    maxVideoBitrate,
+                    maxVideoHeight,
+                    false,
+                    new OnPathReadyListener() {
+                        @Override
+                        public void onPathReady(String videoPath) {
+                            resultMap.put(cache.MAP_KEY_PATH, videoPath);
+                            result.success(resultMap);
+                            cache.clear();
+                        }
+                    });
+            return;
         }
-        cache.clear();
+
+        final Double maxWidth = (Double) resultMap.get(cache.MAP_KEY_MAX_WIDTH);
+        final Double maxHeight = (Double) resultMap.get(cache.MAP_KEY_MAX_HEIGHT);
+        final int imageQuality =
+                resultMap.get(cache.MAP_KEY_IMAGE_QUALITY) == null
+                        ? 100
+                        : (int) resultMap.get(cache.MAP_KEY_IMAGE_QUALITY);
+        final int maxGifFrameRate =
+                resultMap.get(cache.MAP_KEY_MAX_GIF_FRAME_RATE) == null
+                        ? 0
+                        : (int) resultMap.get(cache.MAP_KEY_MAX_GIF_FRAME_RATE);
+
+        backgroundExecutor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        final String newPath;
+                        try {
+                            newPath = imageResizer.resizeImageIfNeeded(
+                                    path, maxWidth, maxHeight, imageQuality, maxGifFrameRate);
+                        } catch (final Throwable e) {
+                            mainThreadExecutor.execute(
+                                    new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            result.error("resize_failed", e.getMessage(), null);
+                                            cache.clear();
+                                            imageResizer.clearBitmapPool();
+                                        }
+                                    });
+                            return;
+                        }
+                        mainThreadExecutor.execute(
+                                new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        resultMap.put(cache.MAP_KEY_PATH, newPath);
+                                        result.success(resultMap);
+                                        cache.clear();
+                                        imageResizer.releaseResizedImage(newPath);
+                                        imageResizer.clearBitmapPool();
+                                    }
+                                });
+                    }
+                });
+    }
+
+    /** Sets where the progress of video transcodes is sent, or null to stop sending it. */
+    public void setVideoProgressSink(EventChannel.EventSink events) {
+        videoProgressEvents = events;
     }
 
     public void chooseVideoFromGallery(MethodCall methodCall, MethodChannel.Result result) {
@@ -323,6 +481,45 @@ public class ImagePickerDelegate
         activity.startActivityForResult(pickImageIntent, REQUEST_CODE_CHOOSE_IMAGE_FROM_GALLERY);
     }
 
+    public void chooseMultiImageFromGallery(
+            Map<String, Object> arguments, EventChannel.EventSink events) {
+        if (pendingResult != null || multiImageActive) {
+            events.error("already_active", "Image picker is already active", null);
+            events.endOfStream();
+            return;
+        }
+
+        multiImageActive = true;
+        pendingMultiImageEvents = events;
+        multiImageArguments = arguments;
+        cache.clear();
+
+        if (!permissionManager.isPermissionGranted(Manifest.permission.READ_EXTERNAL_STORAGE)) {
+            permissionManager.askForPermission(
+                    Manifest.permission.READ_EXTERNAL_STORAGE,
+                    REQUEST_EXTERNAL_MULTI_IMAGE_STORAGE_PERMISSION);
+            return;
+        }
+
+        launchPickMultiImageFromGalleryIntent();
+    }
+
+    /**
+     * Stops sending results of the current multi-image pick, as nobody listens to them anymore. The
+     * pick still counts as active until the picker returns and its images are done, as the picker
+     * activity and the resizes cannot be stopped.
+     */
+    public void cancelMultiImage() {
+        pendingMultiImageEvents = null;
+    }
+
+    private void launchPickMultiImageFromGalleryIntent() {
+        Intent pickImageIntent = new Intent(Intent.ACTION_GET_CONTENT);
+        pickImageIntent.setType("image/*");
+        pickImageIntent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+        activity.startActivityForResult(pickImageIntent, REQUEST_CODE_CHOOSE_MULTI_IMAGE_FROM_GALLERY);
+    }
+
     public void takeImageWithCamera(MethodCall methodCall, MethodChannel.Result result) {
         if (!setPendingMethodCallAndResult(methodCall, result)) {
             finishWithAlreadyActiveError(result);
@@ -416,6 +613,11 @@ public class ImagePickerDelegate
                     launchPickVideoFromGalleryIntent();
                 }
                 break;
+            case REQUEST_EXTERNAL_MULTI_IMAGE_STORAGE_PERMISSION:
+                if (permissionGranted) {
+                    launchPickMultiImageFromGalleryIntent();
+                }
+                break;
             case REQUEST_CAMERA_IMAGE_PERMISSION:
                 if (permissionGranted) {
                     launchTakeImageWithCameraIntent();
@@ -436,6 +638,13 @@ public class ImagePickerDelegate
                 case REQUEST_EXTERNAL_VIDEO_STORAGE_PERMISSION:
                     finishWithError("photo_access_denied", "The user did not allow photo access.");
                     break;
+                case REQUEST_EXTERNAL_MULTI_IMAGE_STORAGE_PERMISSION:
+                    if (pendingMultiImageEvents != null) {
+                        pendingMultiImageEvents.error(
+                                "photo_access_denied", "The user did not allow photo access.", null);
+                    }
+                    finishMultiImage();
+                    break;
                 case REQUEST_CAMERA_IMAGE_PERMISSION:
                 case REQUEST_CAMERA_VIDEO_PERMISSION:
                     finishWithError("camera_access_denied", "The user did not allow camera access.");
@@ -452,6 +661,9 @@ public class ImagePickerDelegate
             case REQUEST_CODE_CHOOSE_IMAGE_FROM_GALLERY:
                 handleChooseImageResult(resultCode, data);
                 break;
+            case REQUEST_CODE_CHOOSE_MULTI_IMAGE_FROM_GALLERY:
+                handleChooseMultiImageResult(resultCode, data);
+                break;
             case REQUEST_CODE_TAKE_IMAGE_WITH_CAMERA:
                 handleCaptureImageResult(resultCode);
                 break;
@@ -470,8 +682,11 @@ public class ImagePickerDelegate
 
     private void handleChooseImageResult(int resultCode, Intent data) {
         if (resultCode == Activity.RESULT_OK && data != null) {
-            String path = fileUtils.getPathFromUri(activity, data.getData());
-            handleImageResult(path, false);
+            if (methodCall != null) {
+                handleChosenImageResult(data.getData());
+            } else {
+                finishWithSuccess(fileUtils.getPathFromUri(activity, data.getData()));
+            }
             return;
         }
 
@@ -479,10 +694,188 @@ public class ImagePickerDelegate
         finishWithSuccess(null);
     }
 
+    private void handleChosenImageResult(final Uri uri) {
+        final Double maxWidth = methodCall.argument("maxWidth");
+        final Double maxHeight = methodCall.argument("maxHeight");
+        final int imageQuality =
+                methodCall.argument("imageQuality") == null
+                        ? 100
+                        : (int) methodCall.argument("imageQuality");
+        final int maxGifFrameRate =
+                methodCall.argument("maxGifFrameRate") == null
+                        ? 0
+                        : (int) methodCall.argument("maxGifFrameRate");
+
+        backgroundExecutor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        final String finalImagePath;
+                        try {
+                            finalImagePath = resizePickedImage(
+                                    uri, maxWidth, maxHeight, imageQuality, maxGifFrameRate);
+                        } catch (final Throwable e) {
+                            mainThreadExecutor.execute(
+                                    new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            finishWithError("resize_failed", e.getMessage());
+                                        }
+                                    });
+                            return;
+                        }
+
+                        mainThreadExecutor.execute(
+                                new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        if (finalImagePath == null) {
+                                            finishWithError("invalid_image", "Could not read " + uri);
+                                        } else {
+                                            finishWithSuccess(finalImagePath);
+                                        }
+                                    }
+                                });
+                    }
+                });
+    }
+
+    private void handleChooseMultiImageResult(int resultCode, Intent data) {
+        if (pendingMultiImageEvents == null) {
+            // Nobody listens to the results anymore.
+            finishMultiImage();
+            return;
+        }
+
+        List<Uri> uris = new ArrayList<>();
+        if (resultCode == Activity.RESULT_OK && data != null) {
+            ClipData clipData = data.getClipData();
+            if (clipData != null) {
+                for (int i = 0; i < clipData.getItemCount(); i++) {
+                    uris.add(clipData.getItemAt(i).getUri());
+                }
+            } else if (data.getData() != null) {
+                // Pickers return a single image this way, even when asked for several.
+                uris.add(data.getData());
+            }
+        }
+
+        if (uris.isEmpty()) {
+            // User cancelled choosing pictures.
+            finishMultiImage();
+            return;
+        }
+
+        final EventChannel.EventSink events = pendingMultiImageEvents;
+        final Double maxWidth = multiImageArgument("maxWidth");
+        final Double maxHeight = multiImageArgument("maxHeight");
+        final Integer imageQualityArgument = multiImageArgument("imageQuality");
+        final int imageQuality = imageQualityArgument == null ? 100 : imageQualityArgument;
+        final Integer maxGifFrameRateArgument = multiImageArgument("maxGifFrameRate");
+        final int maxGifFrameRate = maxGifFrameRateArgument == null ? 0 : maxGifFrameRateArgument;
+
+        pendingMultiImageCount = uris.size();
+        for (final Uri uri : uris) {
+            backgroundExecutor.execute(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            String finalImagePath;
+                            try {
+                                finalImagePath = resizePickedImage(
+                                        uri, maxWidth, maxHeight, imageQuality, maxGifFrameRate);
+                            } catch (Throwable e) {
+                                finishMultiImageItem(events, null, "resize_failed", e.getMessage());
+                                return;
+                            }
+                            if (finalImagePath == null) {
+                                finishMultiImageItem(events, null, "invalid_image", "Could not read " + uri);
+                                return;
+                            }
+                            finishMultiImageItem(events, finalImagePath, null, null);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Resizes a picked image on the calling thread, once its estimated memory use fits the budget.
+     *
+     * @return the path for the resized image, or null if the picked image cannot be read
+     */
+    private String resizePickedImage(
+            Uri uri, Double maxWidth, Double maxHeight, int imageQuality, int maxGifFrameRate) {
+        String name = "image_picker" + FileUtils.getImageExtension(uri);
+        // Changed content can only be told apart by its size and modification time, so without the
+        // latter the result is not cached under the URI.
+        long lastModified = fileUtils.getLastModified(activity, uri);
+        ParcelFileDescriptor descriptor = fileUtils.openRemoteFileDescriptor(activity, uri);
+        if (descriptor != null) {
+            try {
+                FileDescriptor fileDescriptor = descriptor.getFileDescriptor();
+                String source =
+                        lastModified < 0
+                                ? null
+                                : uri + "|" + descriptor.getStatSize() + "|" + lastModified;
+                int permits = acquireResizeMemory(
+                        imageResizer.estimateResizeBytes(fileDescriptor, name, maxWidth, maxHeight));
+                String finalImagePath;
+                try {
+                    finalImagePath = imageResizer.resizeImageIfNeeded(
+                            fileDescriptor, source, name, maxWidth, maxHeight, imageQuality);
+                } finally {
+                    resizeMemoryBudget.release(permits);
+                }
+                if (finalImagePath != null) {
+                    return finalImagePath;
+                }
+            } finally {
+                try {
+                    descriptor.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        String path = fileUtils.getPathFromUri(activity, uri);
+        if (path == null) {
+            return null;
+        }
+        int permits = acquireResizeMemory(imageResizer.estimateResizeBytes(path, maxWidth, maxHeight));
+        try {
+            if (lastModified < 0) {
+                return imageResizer.resizeImageIfNeeded(
+                        path, maxWidth, maxHeight, imageQuality, maxGifFrameRate);
+            }
+            // Images copied out of their provider land at a new path on every pick, so the result
+            // is cached under the URI instead, as when resizing from the descriptor.
+            String source = uri + "|" + new File(path).length() + "|" + lastModified;
+            return imageResizer.resizeImageIfNeeded(
+                    path, source, name, maxWidth, maxHeight, imageQuality, maxGifFrameRate);
+        } finally {
+            resizeMemoryBudget.release(permits);
+        }
+    }
+
+    /**
+     * Waits until the given number of bytes fits the memory budget for resizing, and returns the
+     * permits to release afterwards. An image larger than the whole budget still gets resized, alone.
+     */
+    private int acquireResizeMemory(long bytes) {
+        int permits = (int) Math.min(RESIZE_MEMORY_BUDGET_KB, Math.max(1, bytes / 1024));
+        resizeMemoryBudget.acquireUninterruptibly(permits);
+        return permits;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T multiImageArgument(String key) {
+        return multiImageArguments == null ? null : (T) multiImageArguments.get(key);
+    }
+
     private void handleChooseVideoResult(int resultCode, Intent data) {
         if (resultCode == Activity.RESULT_OK && data != null) {
             String path = fileUtils.getPathFromUri(activity, data.getData());
-            handleVideoResult(path);
+            handleVideoResult(path, false);
             return;
         }
 
@@ -518,7 +911,7 @@ public class ImagePickerDelegate
                     new OnPathReadyListener() {
                         @Override
                         public void onPathReady(String path) {
-                            handleVideoResult(path);
+                            handleVideoResult(path, true);
                         }
                     });
             return;
@@ -528,36 +921,187 @@ public class ImagePickerDelegate
         finishWithSuccess(null);
     }
 
-    private void handleImageResult(String path, boolean shouldDeleteOriginalIfScaled) {
+    private void handleImageResult(
+            final String path, final boolean shouldDeleteOriginalIfScaled) {
         if (methodCall != null) {
-            Double maxWidth = methodCall.argument("maxWidth");
-            Double maxHeight = methodCall.argument("maxHeight");
-            int imageQuality =
+            final Double maxWidth = methodCall.argument("maxWidth");
+            final Double maxHeight = methodCall.argument("maxHeight");
+            final int imageQuality =
                     methodCall.argument("imageQuality") == null
                             ? 100
                             : (int) methodCall.argument("imageQuality");
+            final int maxGifFrameRate =
+                    methodCall.argument("maxGifFrameRate") == null
+                            ? 0
+                            : (int) methodCall.argument("maxGifFrameRate");
 
-            String finalImagePath =
-                    imageResizer.resizeImageIfNeeded(path, maxWidth, maxHeight, imageQuality);
-
-            finishWithSuccess(finalImagePath);
-
-            //delete original file if scaled
-            if (finalImagePath != null && !finalImagePath.equals(path) && shouldDeleteOriginalIfScaled) {
-                new File(path).delete();
-            }
+            backgroundExecutor.execute(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            final String finalImagePath;
+                            try {
+                                finalImagePath =
+                                        imageResizer.resizeImageIfNeeded(
+                                                path, maxWidth, maxHeight, imageQuality, maxGifFrameRate);
+                            } catch (final Throwable e) {
+                                mainThreadExecutor.execute(
+                                        new Runnable() {
+                                            @Override
+                                            public void run() {
+                                                finishWithError("resize_failed", e.getMessage());
+                                            }
+                                        });
+                                return;
+                            }
+
+                            //delete original file if scaled
+                            if (finalImagePath != null
+                                    && !finalImagePath.equals(path)
+                                    && shouldDeleteOriginalIfScaled) {
+                                new File(path).delete();
+                            }
+
+                            mainThreadExecutor.execute(
+                                    new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            finishWithSuccess(finalImagePath);
+                                        }
+                                    });
+                        }
+                    });
         } else {
             finishWithSuccess(path);
         }
     }
 
-    private void handleVideoResult(String path) {
-        finishWithSuccess(path);
+    private void handleVideoResult(String path, boolean shouldDeleteOriginalIfTranscoded) {
+        Integer maxVideoBitrate = null;
+        Integer maxVideoHeight = null;
+        if (methodCall != null) {
+            maxVideoBitrate = methodCall.argument(ImagePickerCache.MAP_KEY_MAX_VIDEO_BITRATE);
+            maxVideoHeight = methodCall.argument(ImagePickerCache.MAP_KEY_MAX_VIDEO_HEIGHT);
+        }
+        if (path == null || (maxVideoBitrate == null && maxVideoHeight == null)) {
+            finishWithSuccess(path);
+            return;
+        }
+
+        transcodeVideo(
+                path,
+                maxVideoBitrate,
+                maxVideoHeight,
+                shouldDeleteOriginalIfTranscoded,
+                new OnPathReadyListener() {
+                    @Override
+                    public void onPathReady(String videoPath) {
+                        if (pendingResult != null) {
+                            cache.clear();
+                        }
+                        finishWithSuccess(videoPath);
+                    }
+                });
+    }
+
+    /**
+     * Transcodes the video at {@code path} on the background executor if it exceeds the limits,
+     * and passes the path of the video to use to {@code listener} on the main thread. If that video
+     * is already being transcoded, {@code listener} gets the result of that transcode instead.
+     */
+    private void transcodeVideo(
+            final String path,
+            final Integer maxVideoBitrate,
+            final Integer maxVideoHeight,
+            final boolean shouldDeleteOriginalIfTranscoded,
+            final OnPathReadyListener listener) {
+        // Lets retrieveLostImage start over should the app be killed before this is done.
+        cache.saveTypeWithMethodCallName(ImagePickerPlugin.METHOD_CALL_VIDEO);
+        cache.saveVideoLimits(maxVideoBitrate, maxVideoHeight);
+        cache.saveResult(path, null, null);
+
+        // The same video transcoded with other limits is a different output.
+        final String transcode = path + "|" + maxVideoBitrate + "|" + maxVideoHeight;
+        List<OnPathReadyListener> waiting = transcodesInFlight.get(transcode);
+        if (waiting != null) {
+            waiting.add(listener);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(listener);
+        transcodesInFlight.put(transcode, waiting);
+
+        videoExecutor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        File source = new File(path);
+                        String name = source.getName();
+                        int extension = name.lastIndexOf('.');
+                        String baseName = extension > 0 ? name.substring(0, extension) : name;
+                        // The hash keeps videos with the same name in different folders, or
+                        // transcoded with different limits, apart.
+                        File output =
+                                new File(
+                                        externalFilesDirectory,
+                                        "transcoded_"
+                                                + baseName
+                                                + "_"
+                                                + Integer.toHexString(transcode.hashCode())
+                                                + ".mp4");
+
+                        VideoTranscoder.ProgressListener progressListener =
+                                new VideoTranscoder.ProgressListener() {
+                                    @Override
+                                    public void onProgress(double progress) {
+                                        sendVideoProgress(progress);
+                                    }
+                                };
+
+                        String videoPath = path;
+                        try {
+                            VideoTranscoder transcoder =
+                                    videoTranscoderFactory.create(maxVideoBitrate, maxVideoHeight);
+                            if (transcoder.transcode(source, output, progressListener)) {
+                                videoPath = output.getPath();
+                                if (shouldDeleteOriginalIfTranscoded) {
+                                    source.delete();
+                                }
+                            }
+                        } catch (Throwable e) {
+                            Log.w("ImagePickerDelegate", "Could not transcode " + path, e);
+                        }
+
+                        final String finalVideoPath = videoPath;
+                        mainThreadExecutor.execute(
+                                new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        for (OnPathReadyListener waitingListener :
+                                                transcodesInFlight.remove(transcode)) {
+                                            waitingListener.onPathReady(finalVideoPath);
+                                        }
+                                    }
+                                });
+                    }
+                });
+    }
+
+    private void sendVideoProgress(final double progress) {
+        mainThreadExecutor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        if (videoProgressEvents != null) {
+                            videoProgressEvents.success(progress);
+                        }
+                    }
+                });
     }
 
     private boolean setPendingMethodCallAndResult(
             MethodCall methodCall, MethodChannel.Result result) {
-        if (pendingResult != null) {
+        if (pendingResult != null || multiImageActive) {
             return false;
         }
 
@@ -571,6 +1115,9 @@ public class ImagePickerDelegate
     }
 
     private void finishWithSuccess(String imagePath) {
+        imageResizer.clearBitmapPool();
+        // Once handed over, or saved for retrieveLostImage, later picks may evict the result.
+        imageResizer.releaseResizedImage(imagePath);
         if (pendingResult == null) {
             cache.saveResult(imagePath, null, null);
             return;
@@ -584,6 +1131,7 @@ public class ImagePickerDelegate
     }
 
     private void finishWithError(String errorCode, String errorMessage) {
+        imageResizer.clearBitmapPool();
         if (pendingResult == null) {
             cache.saveResult(null, errorCode, errorMessage);
             return;
@@ -592,6 +1140,46 @@ public class ImagePickerDelegate
         clearMethodCallAndResult();
     }
 
+    /**
+     * Sends the result for one image of a multi-image pick on the main thread, and ends the stream
+     * after the last one.
+     */
+    private void finishMultiImageItem(
+            final EventChannel.EventSink events,
+            final String imagePath,
+            final String errorCode,
+            final String errorMessage) {
+        mainThreadExecutor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        // Unless cancelled in the meantime.
+                        if (events == pendingMultiImageEvents) {
+                            if (errorCode != null) {
+                                events.error(errorCode, errorMessage, null);
+                            } else {
+                                events.success(imagePath);
+                            }
+                        }
+                        imageResizer.releaseResizedImage(imagePath);
+                        if (--pendingMultiImageCount == 0) {
+                            finishMultiImage();
+                        }
+                    }
+                });
+    }
+
+    private void finishMultiImage() {
+        imageResizer.clearBitmapPool();
+        if (pendingMultiImageEvents != null) {
+            pendingMultiImageEvents.endOfStream();
+        }
+        pendingMultiImageEvents = null;
+        multiImageArguments = null;
+        pendingMultiImageCount = 0;
+        multiImageActive = false;
+    }
+
     private void clearMethodCallAndResult() {
         methodCall = null;
         pendingResult = null;
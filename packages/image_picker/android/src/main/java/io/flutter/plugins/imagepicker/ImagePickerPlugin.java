@@ -11,18 +11,24 @@ import android.os.Environment;
 import android.os.Handler;
 import android.os.Looper;
 import androidx.annotation.VisibleForTesting;
+import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.PluginRegistry;
 import java.io.File;
+import java.util.Map;
 
-public class ImagePickerPlugin implements MethodChannel.MethodCallHandler {
+public class ImagePickerPlugin
+    implements MethodChannel.MethodCallHandler, EventChannel.StreamHandler {
 
   static final String METHOD_CALL_IMAGE = "pickImage";
   static final String METHOD_CALL_VIDEO = "pickVideo";
   private static final String METHOD_CALL_RETRIEVE = "retrieve";
 
   private static final String CHANNEL = "plugins.flutter.io/image_picker";
+  private static final String MULTI_IMAGE_CHANNEL = "plugins.flutter.io/image_picker/multi_image";
+  private static final String VIDEO_PROGRESS_CHANNEL =
+      "plugins.flutter.io/image_picker/video_progress";
 
   private static final int SOURCE_CAMERA = 0;
   private static final int SOURCE_GALLERY = 1;
@@ -52,6 +58,20 @@ public class ImagePickerPlugin implements MethodChannel.MethodCallHandler {
     registrar.addRequestPermissionsResultListener(delegate);
     final ImagePickerPlugin instance = new ImagePickerPlugin(registrar, delegate);
     channel.setMethodCallHandler(instance);
+    new EventChannel(registrar.messenger(), MULTI_IMAGE_CHANNEL).setStreamHandler(instance);
+    new EventChannel(registrar.messenger(), VIDEO_PROGRESS_CHANNEL)
+        .setStreamHandler(
+            new EventChannel.StreamHandler() {
+              @Override
+              public void onListen(Object arguments, EventChannel.EventSink events) {
+                delegate.setVideoProgressSink(events);
+              }
+
+              @Override
+              public void onCancel(Object arguments) {
+                delegate.setVideoProgressSink(null);
+              }
+            });
   }
 
   @VisibleForTesting
@@ -141,6 +161,22 @@ public class ImagePickerPlugin implements MethodChannel.MethodCallHandler {
     }
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public void onListen(Object arguments, EventChannel.EventSink events) {
+    if (registrar.activity() == null) {
+      events.error("no_activity", "image_picker plugin requires a foreground activity.", null);
+      events.endOfStream();
+      return;
+    }
+    delegate.chooseMultiImageFromGallery((Map<String, Object>) arguments, events);
+  }
+
+  @Override
+  public void onCancel(Object arguments) {
+    delegate.cancelMultiImage();
+  }
+
   @Override
   public void onMethodCall(MethodCall call, MethodChannel.Result rawResult) {
     if (registrar.activity() == null) {
@@ -6,19 +6,24 @@ package io.flutter.plugins.imagepicker;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
 import android.util.Log;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
 
 import io.flutter.plugins.imagepicker.gif_compression.GifCompressionAsync;
 import io.flutter.plugins.imagepicker.gif_compression.gif_decoder.GifDecoder;
@@ -27,22 +32,68 @@ import io.flutter.plugins.imagepicker.gif_compression.gif_encoder.AnimatedGifEnc
 import io.flutter.plugins.imagepicker.util.AppUtils;
 
 class ImageResizer {
+    // Images whose subsampled decode would take more than a quarter of the heap are downscaled in
+    // strips of about this many decoded bytes instead.
+    private static final int TILE_STRIP_BYTES = 4 * 1024 * 1024;
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    private static final long DEFAULT_CACHE_BYTES = 50 * 1024 * 1024;
+
     private final File externalFilesDirectory;
     private final ExifDataCopier exifDataCopier;
+    private final ResizeCache resizeCache;
+    // Decoded images are handed back here once compressed, so the next decode can reuse them.
+    private final BitmapPool bitmapPool =
+            new BitmapPool(2, Runtime.getRuntime().maxMemory() / 8);
 
     ImageResizer(File externalFilesDirectory, ExifDataCopier exifDataCopier) {
+        this(externalFilesDirectory, exifDataCopier, DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * @param maxCacheBytes how much space resized images may take up in the external files
+     *                      directory before the least recently used ones are deleted
+     */
+    ImageResizer(File externalFilesDirectory, ExifDataCopier exifDataCopier, long maxCacheBytes) {
         this.externalFilesDirectory = externalFilesDirectory;
         this.exifDataCopier = exifDataCopier;
+        this.resizeCache =
+                new ResizeCache(new File(externalFilesDirectory, "image_picker_resized"), maxCacheBytes);
     }
 
     /**
      * If necessary, resizes the image located in imagePath and then returns the path for the scaled
      * image.
      *
-     * <p>If no resizing is needed, returns the path for the original image.
+     * <p>If no resizing is needed, returns the path for the original image. If the same unchanged
+     * image was resized with the same parameters before, returns the earlier result. Scaled images
+     * live in a size-bounded cache, so the returned file can be deleted by later resizes.
+     *
+     * <p>A scaled image is not evicted from the cache until {@link #releaseResizedImage} is called
+     * with its path.
+     *
+     * @param maxGifFrameRate highest frame rate an animated GIF is re-encoded at, dropping frames
+     *                        of faster ones while keeping their timing, or 0 to keep every frame
      */
     String resizeImageIfNeeded(
-            String imagePath, Double maxWidth, Double maxHeight, int imageQuality) {
+            String imagePath, Double maxWidth, Double maxHeight, int imageQuality,
+            int maxGifFrameRate) {
+        return resizeImageIfNeeded(
+                imagePath, null, null, maxWidth, maxHeight, imageQuality, maxGifFrameRate);
+    }
+
+    /**
+     * Like {@link #resizeImageIfNeeded(String, Double, Double, int, int)}, for an image that was
+     * copied to imagePath from elsewhere, so that the copy's path says nothing about its content.
+     *
+     * @param source identifies this version of the image, such as its content URI together with its
+     *               size and modification time, for the result to be cached under; or null to key
+     *               the result on the file at imagePath
+     * @param name   file name for the scaled image, with the extension of the source; ignored when
+     *               source is null
+     */
+    String resizeImageIfNeeded(
+            String imagePath, String source, String name,
+            Double maxWidth, Double maxHeight, int imageQuality, int maxGifFrameRate) {
         boolean shouldScale =
                 maxWidth != null || maxHeight != null || (imageQuality > -1 && imageQuality < 101);
 
@@ -50,9 +101,101 @@ class ImageResizer {
             return imagePath;
         }
 
+        String key;
+        if (source == null) {
+            File file = new File(imagePath);
+            key = ResizeCache.key(file, maxWidth, maxHeight, imageQuality, maxGifFrameRate);
+            name = file.getName();
+        } else {
+            key = ResizeCache.key(source, maxWidth, maxHeight, imageQuality, maxGifFrameRate);
+        }
+        File cached = resizeCache.get(key, name);
+        if (cached != null) {
+            return cached.getPath();
+        }
+
+        File scaledImage = resizeCache.fileFor(key, name);
+        resizeCache.hold(scaledImage);
         try {
-            File scaledImage = resizedImage(imagePath, maxWidth, maxHeight, imageQuality);
-            exifDataCopier.copyExif(imagePath, scaledImage.getPath());
+            resizedImage(
+                    imagePath, maxWidth, maxHeight, imageQuality, maxGifFrameRate, scaledImage);
+        } catch (IOException e) {
+            resizeCache.release(scaledImage);
+            throw new RuntimeException(e);
+        } catch (RuntimeException | Error e) {
+            resizeCache.release(scaledImage);
+            throw e;
+        }
+        resizeCache.trimToSize();
+
+        return scaledImage.getPath();
+    }
+
+    /**
+     * Resizes an image that is only open as a file descriptor, such as one picked from a cloud
+     * provider, by decoding it straight from the descriptor instead of copying it to a file first.
+     * The descriptor must be seekable.
+     *
+     * @param source identifies this version of the image, such as its content URI together with its
+     *               size and modification time, for the result to be cached under; or null if the
+     *               content cannot be told apart from other versions, in which case the result is
+     *               written to a new file outside the cache
+     * @param name   file name for the scaled image, with the extension of the source
+     * @return the path for the scaled image, or null if the image cannot be resized this way. GIFs,
+     * and images other than JPEGs before {@link Build.VERSION_CODES#N}, where their Exif data cannot
+     * be read from a descriptor, have to be copied to a file and resized from there.
+     */
+    String resizeImageIfNeeded(
+            FileDescriptor fileDescriptor, String source, String name,
+            Double maxWidth, Double maxHeight, int imageQuality) {
+        if (isGif(name)) {
+            return null;
+        }
+        // GIFs are never resized from a descriptor, so there is no frame rate to key on.
+        String key =
+                source == null ? null : ResizeCache.key(source, maxWidth, maxHeight, imageQuality, 0);
+        if (key != null) {
+            File cached = resizeCache.get(key, name);
+            if (cached != null) {
+                return cached.getPath();
+            }
+        }
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFileDescriptor(fileDescriptor, null, bounds);
+        if ("image/gif".equals(bounds.outMimeType)) {
+            return null;
+        }
+        if (!isJpeg(bounds) && Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return null;
+        }
+
+        try {
+            if (key == null) {
+                externalFilesDirectory.mkdirs();
+                File imageFile = File.createTempFile("scaled_", "_" + name, externalFilesDirectory);
+                try {
+                    return resizedImage(
+                            fileDescriptor, null, name, maxWidth, maxHeight, imageQuality, 0,
+                            imageFile)
+                            .getPath();
+                } catch (IOException | RuntimeException e) {
+                    imageFile.delete();
+                    throw e;
+                }
+            }
+            File scaledImage = resizeCache.fileFor(key, name);
+            resizeCache.hold(scaledImage);
+            try {
+                resizedImage(
+                        fileDescriptor, null, name, maxWidth, maxHeight, imageQuality, 0,
+                        scaledImage);
+            } catch (IOException | RuntimeException | Error e) {
+                resizeCache.release(scaledImage);
+                throw e;
+            }
+            resizeCache.trimToSize();
 
             return scaledImage.getPath();
         } catch (IOException e) {
@@ -60,11 +203,114 @@ class ImageResizer {
         }
     }
 
-    private File resizedImage(String path, Double maxWidth, Double maxHeight, int imageQuality)
+    /**
+     * Lets a scaled image returned by {@code resizeImageIfNeeded} be evicted from the cache again,
+     * once it has been delivered. Paths that are not cached entries are ignored.
+     */
+    void releaseResizedImage(String imagePath) {
+        if (imagePath != null) {
+            resizeCache.release(new File(imagePath));
+        }
+    }
+
+    /**
+     * Estimates how much memory resizing the image located in imagePath takes at its peak, so that
+     * several images can be resized at once without running out of it. Returns 0 if the image does
+     * not need resizing or cannot be read.
+     */
+    long estimateResizeBytes(String imagePath, Double maxWidth, Double maxHeight) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(imagePath, bounds);
+        return estimateResizeBytes(bounds, isGif(imagePath), maxWidth, maxHeight);
+    }
+
+    /**
+     * Like {@link #estimateResizeBytes(String, Double, Double)}, for an image that is only open as a
+     * file descriptor.
+     */
+    long estimateResizeBytes(
+            FileDescriptor fileDescriptor, String name, Double maxWidth, Double maxHeight) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFileDescriptor(fileDescriptor, null, bounds);
+        return estimateResizeBytes(bounds, isGif(name), maxWidth, maxHeight);
+    }
+
+    private static long estimateResizeBytes(
+            BitmapFactory.Options bounds, boolean isGif, Double maxWidth, Double maxHeight) {
+        int srcWidth = bounds.outWidth;
+        int srcHeight = bounds.outHeight;
+        if (srcWidth <= 0 || srcHeight <= 0) {
+            return 0;
+        }
+
+        double scale = 1.0;
+        if (maxWidth != null && maxWidth < srcWidth) {
+            scale = Math.min(scale, maxWidth / srcWidth);
+        }
+        if (maxHeight != null && maxHeight < srcHeight) {
+            scale = Math.min(scale, maxHeight / srcHeight);
+        }
+        int width = Math.max(1, (int) (srcWidth * scale));
+        int height = Math.max(1, (int) (srcHeight * scale));
+        long scaledBytes = 4L * width * height;
+
+        if (isGif) {
+            // Frames are composited at full size, next to the scaled frame being encoded.
+            return 4L * srcWidth * srcHeight * 2 + scaledBytes;
+        }
+        int inSampleSize = calculateInSampleSize(srcWidth, srcHeight, width, height);
+        long sampledBytes = 4L * (srcWidth / inSampleSize) * (srcHeight / inSampleSize);
+        if (sampledBytes > Runtime.getRuntime().maxMemory() / 4) {
+            // Decoded in strips, see decodeTiledBitmap.
+            return TILE_STRIP_BYTES + scaledBytes;
+        }
+        return sampledBytes + scaledBytes;
+    }
+
+    private static boolean isGif(String name) {
+        return name != null && name.toLowerCase().endsWith(".gif");
+    }
+
+    private static boolean isJpeg(BitmapFactory.Options bounds) {
+        return "image/jpeg".equals(bounds.outMimeType);
+    }
+
+    private File resizedImage(
+            String path, Double maxWidth, Double maxHeight, int imageQuality, int maxGifFrameRate,
+            File imageFile)
+            throws IOException {
+        FileInputStream inputStream = new FileInputStream(path);
+        try {
+            return resizedImage(
+                    inputStream.getFD(), path, path, maxWidth, maxHeight, imageQuality,
+                    maxGifFrameRate, imageFile);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Resizes the image open as the given file descriptor into imageFile.
+     *
+     * @param path the image's path, or null if it is only open as a descriptor
+     * @param name the image's file name, which tells its type
+     */
+    private File resizedImage(
+            FileDescriptor fileDescriptor, String path, String name,
+            Double maxWidth, Double maxHeight, int imageQuality, int maxGifFrameRate,
+            File imageFile)
             throws IOException {
-        Bitmap bmp = BitmapFactory.decodeFile(path);
-        double originalWidth = bmp.getWidth() * 1.0;
-        double originalHeight = bmp.getHeight() * 1.0;
+        // Only read the dimensions first; the pixels are decoded once the target size is known.
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFileDescriptor(fileDescriptor, null, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Could not decode image " + name);
+        }
+        double originalWidth = bounds.outWidth * 1.0;
+        double originalHeight = bounds.outHeight * 1.0;
 
         if (imageQuality < 0 || imageQuality > 100) {
             imageQuality = 100;
@@ -109,8 +355,8 @@ class ImageResizer {
 
         String fileExtension = "";
         try {
-            if (path != null && path.lastIndexOf(".") != -1) {
-                fileExtension = path.substring(path.lastIndexOf(".") + 1);
+            if (name != null && name.lastIndexOf(".") != -1) {
+                fileExtension = name.substring(name.lastIndexOf(".") + 1);
             }
         } catch (Exception e) {
             fileExtension = "";
@@ -121,119 +367,273 @@ class ImageResizer {
             fileExtension = "jpg";
         }
 
-        if (fileExtension.equalsIgnoreCase("gif")) {
+        // JPEGs get their Exif data written along with the pixels; anything else has it copied over
+        // once written.
+        byte[] exifSegment = isJpeg(bounds) ? exifDataCopier.readExifSegment(fileDescriptor) : null;
 
-            String compressedGifPath = null;
-            try {
+        // The image is encoded straight into a temporary file next to the result and only renamed
+        // into place once complete, EXIF included, so a partially written image never shows up
+        // under its name.
+        File tempFile =
+                File.createTempFile("scaled_", ResizeCache.TEMP_SUFFIX, imageFile.getParentFile());
+        try {
+            if (fileExtension.equalsIgnoreCase("gif") && path != null) {
+                // Callers run this off the main thread, so the GIF is compressed right here rather
+                // than on another thread that would just be waited for.
                 AppUtils.showProgressDialog("Getting GIF");
-                compressedGifPath = new GifCompressionAsync(getFileData(path), height.intValue(), width.intValue(), imageQuality, externalFilesDirectory).execute().get();
+                GifCompressionAsync gifCompression = new GifCompressionAsync(new File(path), height.intValue(), width.intValue(), imageQuality, externalFilesDirectory);
+                gifCompression.setMaxFrameRate(maxGifFrameRate);
+                gifCompression.setOutputFile(tempFile);
+                String compressedGifPath = gifCompression.compress();
                 AppUtils.cancelProgressDialog();
-            } catch (ExecutionException e) {
-                e.printStackTrace();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
 
-
-            String[] pathParts = path.split("/");
-            String imageName = pathParts[pathParts.length - 1];
-
-            File imageFile = new File(externalFilesDirectory, "/scaled_" + imageName);
-            FileOutputStream fileOutput = new FileOutputStream(imageFile);
-
-            if (compressedGifPath == null || compressedGifPath.equalsIgnoreCase("")) {
-                Log.d("compressedGifPath", "resizedImage: compressedGifPath is empty or null");
-                Bitmap scaledBmp = Bitmap.createScaledBitmap(bmp, width.intValue(), height.intValue(), false);
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                boolean saveAsPNG = bmp.hasAlpha();
-                if (saveAsPNG) {
-                    Log.d(
-                            "ImageResizer",
-                            "image_picker: compressing is not supported for type PNG. Returning the image with original quality");
+                // compress() has closed the encoder's stream on the temporary file by the time it
+                // returns, whether or not it succeeded, so the fallback can overwrite the file.
+                if (compressedGifPath == null || compressedGifPath.equalsIgnoreCase("")) {
+                    Log.d("compressedGifPath", "resizedImage: compressedGifPath is empty or null");
+                    writeScaledBitmap(fileDescriptor, name, bounds, width.intValue(), height.intValue(), 100, null, tempFile);
                 }
-                scaledBmp.compress(
-                        saveAsPNG ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG,
-                        100,
-                        outputStream);
-
-                fileOutput.write(outputStream.toByteArray());
             } else {
-                fileOutput.write(getFileData(compressedGifPath));
+                writeScaledBitmap(fileDescriptor, name, bounds, width.intValue(), height.intValue(), imageQuality, exifSegment, tempFile);
+            }
+            if (!isJpeg(bounds)) {
+                if (path != null) {
+                    exifDataCopier.copyExif(path, tempFile.getPath());
+                } else {
+                    exifDataCopier.copyExif(fileDescriptor, tempFile.getPath());
+                }
             }
 
-            fileOutput.close();
-            return imageFile;
-
-        } else {
-            Bitmap scaledBmp = Bitmap.createScaledBitmap(bmp, width.intValue(), height.intValue(), false);
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            boolean saveAsPNG = bmp.hasAlpha();
-            if (saveAsPNG) {
-                Log.d(
-                        "ImageResizer",
-                        "image_picker: compressing is not supported for type PNG. Returning the image with original quality");
+            // Without this the rename can reach the disk before the data does, leaving an empty
+            // or truncated file under the final name after a crash.
+            sync(tempFile);
+            if (!tempFile.renameTo(imageFile)) {
+                // Some file systems will not rename over an existing file.
+                imageFile.delete();
+                if (!tempFile.renameTo(imageFile)) {
+                    throw new IOException("Could not write " + imageFile);
+                }
             }
-            scaledBmp.compress(
+        } finally {
+            // Only left behind if something went wrong.
+            tempFile.delete();
+        }
+        return imageFile;
+    }
+
+    /**
+     * Flushes everything written to the file so far to the storage device.
+     */
+    private static void sync(File file) throws IOException {
+        FileOutputStream stream = new FileOutputStream(file, true);
+        try {
+            stream.getFD().sync();
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Decodes and scales the image, and encodes it into the given file through a buffered stream.
+     * If given, the Exif segment is written into the file too when it is a JPEG.
+     */
+    private void writeScaledBitmap(
+            FileDescriptor fileDescriptor, String name, BitmapFactory.Options bounds,
+            int width, int height, int imageQuality, byte[] exifSegment, File file)
+            throws IOException {
+        Bitmap scaledBmp = decodeScaledBitmap(fileDescriptor, name, bounds, width, height);
+        boolean saveAsPNG = scaledBmp.hasAlpha();
+        if (saveAsPNG) {
+            Log.d(
+                    "ImageResizer",
+                    "image_picker: compressing is not supported for type PNG. Returning the image with original quality");
+        }
+        OutputStream outputStream =
+                new BufferedOutputStream(new FileOutputStream(file), OUTPUT_BUFFER_SIZE);
+        if (exifSegment != null && !saveAsPNG) {
+            outputStream = exifDataCopier.injectExif(
+                    outputStream, exifSegment, scaledBmp.getWidth(), scaledBmp.getHeight());
+        }
+        try {
+            boolean compressed = scaledBmp.compress(
                     saveAsPNG ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG,
                     imageQuality,
                     outputStream);
+            if (!compressed) {
+                throw new IOException("Could not encode " + name);
+            }
+        } finally {
+            outputStream.close();
+            releaseBitmap(scaledBmp);
+        }
+    }
 
-            String[] pathParts = path.split("/");
-            String imageName = pathParts[pathParts.length - 1];
-
-            File imageFile = new File(externalFilesDirectory, "/scaled_" + imageName);
-            FileOutputStream fileOutput = new FileOutputStream(imageFile);
-            fileOutput.write(outputStream.toByteArray());
-            fileOutput.close();
-            return imageFile;
+    /**
+     * Decodes the image at exactly the requested size.
+     */
+    private Bitmap decodeScaledBitmap(
+            FileDescriptor fileDescriptor, String name, BitmapFactory.Options bounds,
+            int width, int height) throws IOException {
+        int inSampleSize = calculateInSampleSize(bounds.outWidth, bounds.outHeight, width, height);
+        long sampledBytes =
+                4L * (bounds.outWidth / inSampleSize) * (bounds.outHeight / inSampleSize);
+        if (sampledBytes > Runtime.getRuntime().maxMemory() / 4) {
+            Bitmap tiled = decodeTiledBitmap(fileDescriptor, bounds, width, height);
+            if (tiled != null) {
+                return tiled;
+            }
+        }
 
+        Bitmap bmp = decodeSampledBitmap(fileDescriptor, name, bounds, width, height);
+        Bitmap scaledBmp = Bitmap.createScaledBitmap(bmp, width, height, false);
+        if (scaledBmp != bmp) {
+            releaseBitmap(bmp);
         }
+        return scaledBmp;
     }
 
     /**
-     * Get byte[] from file path
+     * Downscales an image too large to decode at once by decoding it in horizontal strips with
+     * {@link BitmapRegionDecoder} and drawing each one, filtered, into the result. Only one strip is
+     * in memory at a time, whatever the size of the source.
      *
-     * @param path
-     * @return
+     * @return the scaled image, or null if the format does not support region decoding
      */
-    private byte[] getFileData(String path) {
-        File file = new File(path);
-        int size = (int) file.length();
-        byte[] bytes = new byte[size];
+    private Bitmap decodeTiledBitmap(
+            FileDescriptor fileDescriptor, BitmapFactory.Options bounds, int width, int height) {
+        BitmapRegionDecoder decoder;
         try {
-            BufferedInputStream buf = new BufferedInputStream(new FileInputStream(file));
-            buf.read(bytes, 0, bytes.length);
-            buf.close();
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            decoder = BitmapRegionDecoder.newInstance(fileDescriptor, false);
         } catch (IOException e) {
-            e.printStackTrace();
+            return null;
         }
-        return bytes;
-    }
 
-
-    private static byte[] readBytesFromFile(String filePath) {
-        FileInputStream fileInputStream = null;
-        byte[] bytesArray = null;
+        int srcWidth = bounds.outWidth;
+        int srcHeight = bounds.outHeight;
+        int inSampleSize = calculateInSampleSize(srcWidth, srcHeight, width, height);
+        float scaleY = (float) height / srcHeight;
+        int sampledWidth = (srcWidth + inSampleSize - 1) / inSampleSize;
+        int srcRowsPerStrip = Math.max(1, TILE_STRIP_BYTES / (4 * sampledWidth)) * inSampleSize;
+        int rowsPerStrip = Math.max(1, (int) (srcRowsPerStrip * scaleY));
+        // Source rows decoded beyond each strip's edges, so filtering near them has real neighbours.
+        int overlap = 2 * inSampleSize;
+
+        Bitmap result = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(result);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = inSampleSize;
+        options.inMutable = true;
+        Bitmap strip = null;
+        boolean hasAlpha = false;
         try {
-            File file = new File(filePath);
-            bytesArray = new byte[(int) file.length()];
-
-            //read file into bytes[]
-            fileInputStream = new FileInputStream(file);
-            fileInputStream.read(bytesArray);
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            if (fileInputStream != null) {
+            for (int top = 0; top < height; top += rowsPerStrip) {
+                int bottom = Math.min(height, top + rowsPerStrip);
+                int srcTop = Math.max(0, (int) Math.floor(top / scaleY) - overlap);
+                int srcBottom = Math.min(srcHeight, (int) Math.ceil(bottom / scaleY) + overlap);
+
+                Rect region = new Rect(0, srcTop, srcWidth, srcBottom);
+                Bitmap previous = strip;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                    options.inBitmap = previous;
+                }
                 try {
-                    fileInputStream.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    strip = decoder.decodeRegion(region, options);
+                } catch (IllegalArgumentException e) {
+                    // The previous strip could not be decoded into, so use a new one.
+                    options.inBitmap = null;
+                    strip = decoder.decodeRegion(region, options);
                 }
+                if (previous != null && previous != strip) {
+                    previous.recycle();
+                }
+                if (strip == null) {
+                    result.recycle();
+                    return null;
+                }
+                hasAlpha |= strip.hasAlpha();
+
+                // Stretch the strip over where its source rows land, but only paint this strip's rows.
+                canvas.save();
+                canvas.clipRect(0, top, width, bottom);
+                canvas.drawBitmap(
+                        strip, null, new RectF(0, srcTop * scaleY, width, srcBottom * scaleY), paint);
+                canvas.restore();
             }
+        } finally {
+            if (strip != null) {
+                strip.recycle();
+            }
+            decoder.recycle();
+        }
+        result.setHasAlpha(hasAlpha);
+        return result;
+    }
+
+    /**
+     * Decodes the image at no more than twice the requested size in either dimension, by
+     * subsampling it with the largest power of two that still leaves it at least that large. Where
+     * possible the pixels are decoded into a pooled bitmap.
+     */
+    private Bitmap decodeSampledBitmap(
+            FileDescriptor fileDescriptor, String name, BitmapFactory.Options bounds,
+            int reqWidth, int reqHeight) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize =
+                calculateInSampleSize(bounds.outWidth, bounds.outHeight, reqWidth, reqHeight);
+        options.inMutable = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            // Decoders round subsampled sizes up.
+            int sampledWidth = (bounds.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+            int sampledHeight = (bounds.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+            options.inBitmap = bitmapPool.get(sampledWidth, sampledHeight, options.inPreferredConfig);
+        }
+
+        Bitmap bmp;
+        try {
+            bmp = BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap could not be decoded into after all, so use a new one.
+            bitmapPool.put(options.inBitmap);
+            options.inBitmap = null;
+            bmp = BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+        }
+        if (bmp == null) {
+            throw new IOException("Could not decode image " + name);
+        }
+        return bmp;
+    }
+
+    /**
+     * Returns the largest power of two that the source can be divided by while staying at least as
+     * large as the requested size.
+     */
+    static int calculateInSampleSize(int srcWidth, int srcHeight, int reqWidth, int reqHeight) {
+        reqWidth = Math.max(1, reqWidth);
+        reqHeight = Math.max(1, reqHeight);
+        int inSampleSize = 1;
+        while (srcWidth / (inSampleSize * 2) >= reqWidth
+                && srcHeight / (inSampleSize * 2) >= reqHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Frees the bitmaps kept for reuse between decodes. Called once a pick is delivered, so they do
+     * not stay allocated while nothing is being resized.
+     */
+    void clearBitmapPool() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            bitmapPool.clear();
+        }
+    }
+
+    private void releaseBitmap(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            bitmapPool.put(bitmap);
+        } else {
+            bitmap.recycle();
         }
-        return bytesArray;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,200 @@
+// Copyright 2017 The Chromium Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package io.flutter.plugins.imagepicker;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk cache of resized images, so picking the same image with the same parameters again
+ * returns the earlier result instead of decoding and encoding it again.
+ *
+ * <p>Entries are keyed by the identity of the source (a file's path, or a picked content URI,
+ * together with its length and modification time) and the resize parameters. The directory itself
+ * is the index: an entry's modification time records when it was last used, and the least recently
+ * used entries are deleted once the cache grows past its byte budget.
+ *
+ * <p>Paths handed to the app point into the cache, so a file the app keeps the path of can be
+ * deleted by a later pick. Entries are held from when they are written or looked up until they are
+ * released once delivered, and held entries are never evicted.
+ */
+class ResizeCache {
+    // Bump when the resize output changes, so entries written by older versions are not served.
+    private static final int VERSION = 1;
+    // Suffix of files still being written into the cache directory. They are not evicted, only
+    // deleted once they are old enough to have been abandoned.
+    static final String TEMP_SUFFIX = ".tmp";
+    // Temporary files this old were left behind by a process that died while writing them.
+    private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+
+    private final File directory;
+    private final long maxBytes;
+    // Entries that are being written or have not been delivered yet, with how many resizes hold
+    // each of them.
+    private final Map<File, Integer> held = new HashMap<>();
+
+    ResizeCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the key for resizing the given source with the given parameters.
+     */
+    static String key(
+            File source, Double maxWidth, Double maxHeight, int imageQuality, int maxGifFrameRate) {
+        return key(
+                source.getAbsolutePath() + "|" + source.length() + "|" + source.lastModified(),
+                maxWidth,
+                maxHeight,
+                imageQuality,
+                maxGifFrameRate);
+    }
+
+    /**
+     * Returns the key for resizing a source that is not a file, given a string that identifies it.
+     */
+    static String key(
+            String source, Double maxWidth, Double maxHeight, int imageQuality, int maxGifFrameRate) {
+        String identity =
+                VERSION
+                        + "|" + source
+                        + "|" + maxWidth
+                        + "|" + maxHeight
+                        + "|" + imageQuality
+                        + "|" + maxGifFrameRate;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(identity.getBytes(Charset.forName("UTF-8")));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+                hex.append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android release ships SHA-1.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the file an entry is stored in. The name of the source is kept at the end, so the
+     * entry has the same extension.
+     */
+    File fileFor(String key, String name) {
+        directory.mkdirs();
+        return new File(directory, key + "_" + name);
+    }
+
+    /**
+     * Returns the cached entry, marked as just used and held until it is released, or null if there
+     * is none.
+     */
+    synchronized File get(String key, String name) {
+        File file = new File(directory, key + "_" + name);
+        if (!file.isFile()) {
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        hold(file);
+        return file;
+    }
+
+    /**
+     * Keeps the entry from being evicted until it is released as many times as it was held.
+     */
+    synchronized void hold(File entry) {
+        Integer count = held.get(entry);
+        held.put(entry, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Lets the entry be evicted again once every hold on it is released. Files the cache does not
+     * hold are ignored.
+     */
+    synchronized void release(File entry) {
+        Integer count = held.get(entry);
+        if (count == null) {
+            return;
+        }
+        if (count == 1) {
+            held.remove(entry);
+        } else {
+            held.put(entry, count - 1);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits its byte budget, and temporary
+     * files left behind by a process that died while writing them. Held entries are kept, even when
+     * that leaves the cache over its budget.
+     */
+    synchronized void trimToSize() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        // Other threads may be writing entries meanwhile, so the times are read once up front for
+        // the sort to see consistent values.
+        long now = System.currentTimeMillis();
+        List<Entry> entries = new ArrayList<>(files.length);
+        long size = 0;
+        for (File file : files) {
+            Entry entry = new Entry(file);
+            if (entry.temporary && now - entry.lastUsed > STALE_TEMP_MILLIS && file.delete()) {
+                continue;
+            }
+            entries.add(entry);
+            size += entry.length;
+        }
+        if (size <= maxBytes) {
+            return;
+        }
+
+        Collections.sort(
+                entries,
+                new Comparator<Entry>() {
+                    @Override
+                    public int compare(Entry a, Entry b) {
+                        return a.lastUsed < b.lastUsed ? -1 : (a.lastUsed == b.lastUsed ? 0 : 1);
+                    }
+                });
+        for (Entry entry : entries) {
+            if (size <= maxBytes) {
+                break;
+            }
+            if (entry.temporary || held.containsKey(entry.file)) {
+                continue;
+            }
+            if (entry.file.delete()) {
+                size -= entry.length;
+            }
+        }
+    }
+
+    private static class Entry {
+        final File file;
+        final boolean temporary;
+        final long lastUsed;
+        final long length;
+
+        Entry(File file) {
+            this.file = file;
+            temporary = file.getName().endsWith(TEMP_SUFFIX);
+            lastUsed = file.lastModified();
+            length = file.length();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package io.flutter.plugins.imagepicker.gif_compression;
+
+/**
+ * Chooses which frames of an animation to keep so that it fits a frame rate and frame count
+ * budget, and how long each kept frame is shown so the animation keeps its timing.
+ * <p>
+ * A dropped frame's display time is folded into the kept frame before it.
+ */
+class FramePlan {
+
+    // Browsers show frames with a delay below 20ms for 100ms, so plan with what is actually seen.
+    private static final int MIN_DELAY_MS = 20;
+    private static final int DEFAULT_DELAY_MS = 100;
+
+    private final int[] frames;
+    private final int[] delays;
+
+    private FramePlan(int[] frames, int[] delays) {
+        this.frames = frames;
+        this.delays = delays;
+    }
+
+    /**
+     * @param sourceDelays display time of each source frame, in milliseconds
+     * @param maxFrameRate highest frame rate to keep, or 0 for no limit
+     * @param maxFrames    highest number of frames to keep, or 0 for no limit
+     */
+    static FramePlan create(int[] sourceDelays, int maxFrameRate, int maxFrames) {
+        int count = sourceDelays.length;
+        int[] start = new int[count + 1]; // start time of each frame, and the total duration
+        for (int i = 0; i < count; i++) {
+            start[i + 1] = start[i] + effectiveDelay(sourceDelays[i]);
+        }
+        int duration = start[count];
+
+        // Shortest time a kept frame has to stay on screen.
+        double interval = 0;
+        if (maxFrameRate > 0) {
+            interval = 1000.0 / maxFrameRate;
+        }
+        if (maxFrames > 0 && count > maxFrames) {
+            interval = Math.max(interval, (double) duration / maxFrames);
+        }
+
+        int[] kept = new int[count];
+        int keptCount = 0;
+        double next = 0;
+        for (int i = 0; i < count; i++) {
+            // Frames start before the end of the animation, so at most duration / interval
+            // frames are kept, which is within maxFrames.
+            if (start[i] >= next) {
+                kept[keptCount++] = i;
+                next = start[i] + interval;
+            }
+        }
+
+        int[] frames = new int[keptCount];
+        int[] delays = new int[keptCount];
+        for (int k = 0; k < keptCount; k++) {
+            frames[k] = kept[k];
+            int end = k + 1 < keptCount ? start[kept[k + 1]] : duration;
+            delays[k] = end - start[kept[k]];
+        }
+        return new FramePlan(frames, delays);
+    }
+
+    private static int effectiveDelay(int delay) {
+        return delay < MIN_DELAY_MS ? DEFAULT_DELAY_MS : delay;
+    }
+
+    /**
+     * @return number of frames kept
+     */
+    int size() {
+        return frames.length;
+    }
+
+    /**
+     * @return index in the source animation of the n-th kept frame
+     */
+    int frameAt(int n) {
+        return frames[n];
+    }
+
+    /**
+     * @return display time of the n-th kept frame in milliseconds, including the frames dropped
+     * after it
+     */
+    int delayAt(int n) {
+        return delays[n];
+    }
+}
@@ -2,14 +2,10 @@ package io.flutter.plugins.imagepicker.gif_compression;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.Color;
 import android.os.AsyncTask;
 import android.widget.Toast;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
 
 import io.flutter.plugins.imagepicker.gif_compression.gif_decoder.GifDecoder;
 import io.flutter.plugins.imagepicker.gif_compression.gif_encoder.AnimatedGifEncoder;
@@ -21,14 +17,21 @@ import io.flutter.plugins.imagepicker.util.AppUtils;
  */
 public class GifCompressionAsync extends AsyncTask<Void, Void, String> {
 
+    // Number of frames, spread over the animation, that a shared palette is trained on.
+    private static final int PALETTE_SAMPLE_FRAMES = 8;
+
     private byte[] fileData;
+    private File gifFile;
     private int height = 0, width = 0, imageQuality = 0;
     private File externalFilesDirectory;
+    private File outputFile;
+    private int maxFrameRate = 0, maxFrames = 0;
     private String convertedGifPath = "";
-    private List<Bitmap> bitmaps = new ArrayList<>();
     private GifDecoder gifDecoder = new GifDecoder();
-    private Bitmap bmpImg;
     private AnimatedGifEncoder animatedGifEncoder = new AnimatedGifEncoder();
+    // Decoded frames are drawn into this one bitmap, which the encoder is done with once
+    // addFrame returns.
+    private Bitmap frameBitmap;
 
     public GifCompressionAsync(byte[] fileData, int height, int width, int imageQuality, File externalFilesDirectory) {
         this.fileData = fileData;
@@ -38,6 +41,46 @@ public class GifCompressionAsync extends AsyncTask<Void, Void, String> {
         this.externalFilesDirectory = externalFilesDirectory;
     }
 
+    /**
+     * Compresses the GIF in the given file, which is decoded straight from a memory mapping instead
+     * of being read onto the heap first.
+     */
+    public GifCompressionAsync(File gifFile, int height, int width, int imageQuality, File externalFilesDirectory) {
+        this.gifFile = gifFile;
+        this.height = height;
+        this.width = width;
+        this.imageQuality = imageQuality;
+        this.externalFilesDirectory = externalFilesDirectory;
+    }
+
+    /**
+     * Writes the compressed GIF to the given file instead of {@code scaled_test} in the external
+     * files directory. Must be called before execute.
+     */
+    public void setOutputFile(File outputFile) {
+        this.outputFile = outputFile;
+    }
+
+    /**
+     * Drops frames so the result plays at no more than the given rate. The time a dropped frame
+     * was shown for is added to the frame kept before it. Must be called before execute.
+     *
+     * @param fps highest frame rate to keep, or 0 to keep every frame (default)
+     */
+    public void setMaxFrameRate(int fps) {
+        maxFrameRate = Math.max(0, fps);
+    }
+
+    /**
+     * Drops frames, spread evenly over the animation's duration, so no more than the given number
+     * are encoded. Must be called before execute.
+     *
+     * @param frames highest number of frames to keep, or 0 for no limit (default)
+     */
+    public void setMaxFrames(int frames) {
+        maxFrames = Math.max(0, frames);
+    }
+
 
     @Override
     protected void onPreExecute() {
@@ -47,42 +90,115 @@ public class GifCompressionAsync extends AsyncTask<Void, Void, String> {
 
     @Override
     protected String doInBackground(Void... voids) {
+        return compress();
+    }
+
+    /**
+     * Runs the compression on the calling thread, for callers that are already off the main
+     * thread.
+     *
+     * @return path of the compressed GIF, or an empty string if it could not be compressed
+     */
+    public String compress() {
         try {
-            gifDecoder.read(fileData);
-            int avgDelay = 0;
-            Bitmap tempBitmap;
-            int frames = 0;
-            while (frames < gifDecoder.getFrameCount()) {
-                gifDecoder.advance();
-
-                tempBitmap = gifDecoder.getNextFrame();
-                bmpImg = Bitmap.createScaledBitmap(tempBitmap, width, height, false);
-                boolean isPng = tempBitmap.hasAlpha();
-                bmpImg.compress(isPng ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG, imageQuality, new ByteArrayOutputStream());
-                bitmaps.add(bmpImg);
-                avgDelay += gifDecoder.getDelay(frames);
-                frames++;
+            if (gifFile != null) {
+                gifDecoder.read(gifFile);
+            } else {
+                gifDecoder.read(fileData);
+            }
+            int frameCount = gifDecoder.getFrameCount();
+            if (frameCount <= 0) {
+                return "";
             }
 
-            avgDelay = avgDelay / gifDecoder.getFrameCount();
+            // Delays are frame metadata, so which frames to keep is known before any pixel data
+            // is decoded.
+            int[] delays = new int[frameCount];
+            for (int i = 0; i < frameCount; i++) {
+                delays[i] = gifDecoder.getDelay(i);
+            }
+            FramePlan plan = FramePlan.create(delays, maxFrameRate, maxFrames);
 
-            convertedGifPath = externalFilesDirectory + "/scaled_test";
-            animatedGifEncoder.start(convertedGifPath);
-            animatedGifEncoder.setDelay(avgDelay);
-            animatedGifEncoder.setRepeat(0);
-            animatedGifEncoder.setTransparent(Color.WHITE);
-            for (Bitmap b : bitmaps) {
-                animatedGifEncoder.addFrame(b);
+            convertedGifPath = outputFile != null
+                    ? outputFile.getPath()
+                    : externalFilesDirectory + "/scaled_test";
+            animatedGifEncoder.setParallelism(Math.min(
+                    Runtime.getRuntime().availableProcessors(), AnimatedGifEncoder.MAX_PARALLELISM));
+            // A source that draws every frame from its global color table gains nothing from
+            // per-frame palettes, so train one palette on a spread of its frames instead.
+            if (!gifDecoder.hasLocalColorTables()) {
+                animatedGifEncoder.setGlobalPalette(true);
+                samplePalette(plan);
+            }
+            // Decoded frames are opaque, so each one can be written as its changes to the last.
+            animatedGifEncoder.setFrameDifferencing(true);
+            if (!animatedGifEncoder.start(convertedGifPath)) {
+                return "";
             }
+            animatedGifEncoder.setRepeat(0);
 
+            // Stream frames through decode -> scale -> encode one at a time, so only the decoder's
+            // canvas and a single scaled frame are alive at once, however long the GIF is.
+            // Dropped frames are still composited by the decoder, but never scaled or encoded.
+            for (int n = 0; n < plan.size(); n++) {
+                Bitmap decoded = decodeFrame(plan.frameAt(n));
+                if (decoded == null) {
+                    break;
+                }
+                Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, false);
+                animatedGifEncoder.setDelay(plan.delayAt(n));
+                boolean added = animatedGifEncoder.addFrame(scaled);
+                // createScaledBitmap hands back the source when no scaling is needed, and that
+                // bitmap is reused for the next frame.
+                if (scaled != decoded) {
+                    scaled.recycle();
+                }
+                // Later frames are written as changes to this one, so there is no skipping it.
+                if (!added) {
+                    return convertedGifPath = "";
+                }
+            }
 
-            animatedGifEncoder.finish();
-        } catch (Exception e) {
+            if (!animatedGifEncoder.finish()) {
+                convertedGifPath = "";
+            }
+        } catch (Throwable e) {
+            // Includes OutOfMemoryError, which large GIFs can run into; the caller falls back to a
+            // still image.
             convertedGifPath = "";
+        } finally {
+            // Only has an effect if finish() was not reached, and then stops the quantizer threads
+            // and closes the output file.
+            animatedGifEncoder.abort();
+            gifDecoder.clear();
+            if (frameBitmap != null) {
+                frameBitmap.recycle();
+                frameBitmap = null;
+            }
         }
         return convertedGifPath;
     }
 
+    private Bitmap decodeFrame(int index) {
+        frameBitmap = gifDecoder.decodeFrame(index, frameBitmap);
+        return frameBitmap;
+    }
+
+    /**
+     * Feeds evenly spaced frames out of those that will be encoded to the encoder's palette sample.
+     */
+    private void samplePalette(FramePlan plan) {
+        int interval = Math.max(1, plan.size() / PALETTE_SAMPLE_FRAMES);
+        for (int n = 0; n < plan.size() && n < PALETTE_SAMPLE_FRAMES * interval; n += interval) {
+            Bitmap decoded = decodeFrame(plan.frameAt(n));
+            if (decoded != null) {
+                // Scaling without filtering introduces no new colors, so the decoded frame is
+                // sampled as is.
+                animatedGifEncoder.addPaletteSample(decoded);
+            }
+        }
+    }
+
     @Override
     protected void onPostExecute(String s) {
         super.onPostExecute(s);
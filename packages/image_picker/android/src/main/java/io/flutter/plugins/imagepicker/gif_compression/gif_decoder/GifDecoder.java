@@ -3,10 +3,15 @@ package io.flutter.plugins.imagepicker.gif_compression.gif_decoder;
 import android.graphics.Bitmap;
 import android.util.Log;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class GifDecoder {
     private static final String TAG = GifDecoder.class.getSimpleName();
@@ -41,11 +46,14 @@ public class GifDecoder {
     private byte[] suffix;
     private byte[] pixelStack;
     private byte[] mainPixels;
-    private int[] mainScratch, copyScratch;
+    // Canvas as composited up to decodedIndex, and the area under the last frame that is
+    // disposed to its previous state.
+    private int[] mainScratch, previousScratch;
+    private int decodedIndex;
 
     private ArrayList<GifFrame> frames;
     private GifFrame currentFrame;
-    private Bitmap previousImage, currentImage, renderImage;
+    private Bitmap currentImage;
 
     private int framePointer;
     private int frameCount;
@@ -68,6 +76,8 @@ public class GifDecoder {
         public int bufferFrameStart;
         /* Local Color Table */
         public int[] lct;
+        /* Index of the nearest frame at or before this one that can be drawn on a blank canvas */
+        public int keyframe;
     }
 
     /**
@@ -101,47 +111,92 @@ public class GifDecoder {
     }
 
 
+    /**
+     * Tells whether any frame carries its own local color table.
+     *
+     * @return false if every frame is drawn with the global color table
+     */
+    public boolean hasLocalColorTables() {
+        for (int i = 0; i < frameCount; i++) {
+            if (frames.get(i).lct != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Get the next frame in the animation sequence.
      *
-     * @return Bitmap representation of frame
+     * @return Bitmap representation of frame, owned by the decoder and overwritten by the next call
      */
     public Bitmap getNextFrame() {
-        if (frameCount <= 0 || framePointer < 0 || currentImage == null) {
+        if (frameCount <= 0 || framePointer < 0 || rawData == null) {
             return null;
         }
+        if (currentImage == null) {
+            currentImage = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        }
+        return decodeFrame(framePointer, currentImage);
+    }
 
-        GifFrame frame = frames.get(framePointer);
+    /**
+     * Decodes the frame at the given index, independent of the position used by {@link #advance()}.
+     * <p>
+     * Decoding continues from the last decoded frame when the requested one follows it, and
+     * otherwise starts over from the nearest preceding frame that does not depend on earlier ones,
+     * so walking forward or sampling every Nth frame never replays the whole animation.
+     *
+     * @param index frame index
+     * @param reuse mutable bitmap of the animation's size to draw into, or null to allocate one
+     * @return the composited frame, which is {@code reuse} when it could be used, or null on error
+     */
+    public Bitmap decodeFrame(int index, Bitmap reuse) {
+        if (index < 0 || index >= frameCount || rawData == null) {
+            return null;
+        }
 
-        //Set the appropriate color table
-        if (frame.lct == null) {
-            act = gct;
+        int keyframe = frames.get(index).keyframe;
+        int start;
+        if (decodedIndex >= keyframe && decodedIndex <= index) {
+            start = decodedIndex + 1;
         } else {
-            act = frame.lct;
-            if (bgIndex == frame.transIndex) {
-                bgColor = 0;
+            start = keyframe;
+            Arrays.fill(mainScratch, 0);
+        }
+        for (int i = start; i <= index; i++) {
+            if (!drawFrame(i, i == start && i == keyframe)) {
+                decodedIndex = -1;
+                return null;
             }
+            decodedIndex = i;
         }
 
-        int save = 0;
-        if (frame.transparency) {
-            save = act[frame.transIndex];
-            act[frame.transIndex] = 0; // set transparent color if specified
-        }
-        if (act == null) {
-            Log.w(TAG, "No Valid Color Table");
-            status = STATUS_FORMAT_ERROR; // no color table defined
-            return null;
+        Bitmap target = reuse;
+        if (target == null || !target.isMutable()
+                || target.getWidth() != width || target.getHeight() != height) {
+            target = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
         }
+        target.setPixels(mainScratch, 0, width, 0, 0, width, height);
+        return target;
+    }
 
-        setPixels(framePointer); // transfer pixel data to image
-
-        // Reset the transparent pixel in the color table
-        if (frame.transparency) {
-            act[frame.transIndex] = save;
+    /**
+     * Releases the frame bitmaps held by the decoder. The decoder must be read again before it
+     * can produce frames.
+     */
+    public void clear() {
+        if (currentImage != null) {
+            currentImage.recycle();
+            currentImage = null;
         }
-
-        return currentImage;
+        rawData = null;
+        mainPixels = null;
+        mainScratch = null;
+        previousScratch = null;
+        frameCount = 0;
+        framePointer = -1;
+        decodedIndex = -1;
     }
 
     /**
@@ -151,10 +206,43 @@ public class GifDecoder {
      * @return read status code (0 = no errors)
      */
     public int read(byte[] data) {
+        return read(data == null ? null : ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Reads GIF image from a file, which is memory mapped rather than copied onto the heap.
+     *
+     * @param file GIF file
+     * @return read status code (0 = no errors)
+     */
+    public int read(File file) {
+        ByteBuffer mapped = null;
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                // The mapping stays valid after the channel is closed.
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Error Mapping File", e);
+        }
+        return read(mapped);
+    }
+
+    /**
+     * Reads GIF image from the remaining bytes of a buffer. The buffer's position is left alone,
+     * and it must not be modified while frames are being decoded.
+     *
+     * @param data containing GIF file.
+     * @return read status code (0 = no errors)
+     */
+    public int read(ByteBuffer data) {
         init();
         if (data != null) {
-            rawData = ByteBuffer.wrap(data);
-            rawData.rewind();
+            rawData = data.slice();
             rawData.order(ByteOrder.LITTLE_ENDIAN);
 
             readHeader();
@@ -172,9 +260,13 @@ public class GifDecoder {
     }
 
     /**
-     * Creates new frame image from current data (and previous frames as specified by their disposition codes).
+     * Disposes of the previous frame and draws the given one onto the canvas.
+     *
+     * @param onBlankCanvas true when the canvas was just cleared to start from a keyframe, in which
+     *                      case only a disposal to background still has to be applied
+     * @return false if the frame has no color table to draw with
      */
-    private void setPixels(int frameIndex) {
+    private boolean drawFrame(int frameIndex, boolean onBlankCanvas) {
         GifFrame currentFrame = frames.get(frameIndex);
         GifFrame previousFrame = null;
         int previousIndex = frameIndex - 1;
@@ -182,16 +274,29 @@ public class GifDecoder {
             previousFrame = frames.get(previousIndex);
         }
 
+        //Set the appropriate color table
+        int background = bgColor;
+        if (currentFrame.lct == null) {
+            act = gct;
+        } else {
+            act = currentFrame.lct;
+            if (bgIndex == currentFrame.transIndex) {
+                background = 0;
+            }
+        }
+        if (act == null) {
+            Log.w(TAG, "No Valid Color Table");
+            status = STATUS_FORMAT_ERROR; // no color table defined
+            return false;
+        }
+
         final int[] dest = mainScratch;
 
-        if (previousFrame != null && previousFrame.dispose > DISPOSAL_UNSPECIFIED) {
-            if (previousFrame.dispose == DISPOSAL_NONE && currentImage != null) {
-                currentImage.getPixels(dest, 0, width, 0, 0, width, height);
-            }
+        if (previousFrame != null) {
             if (previousFrame.dispose == DISPOSAL_BACKGROUND) {
                 int c = 0;
                 if (!currentFrame.transparency) {
-                    c = bgColor;
+                    c = background;
                 }
                 for (int i = 0; i < previousFrame.ih; i++) {
                     int n1 = (previousFrame.iy + i) * width + previousFrame.ix;
@@ -201,11 +306,25 @@ public class GifDecoder {
                     }
                 }
             }
-            if (previousFrame.dispose == DISPOSAL_PREVIOUS && previousImage != null) {
-                previousImage.getPixels(dest, 0, width, 0, 0, width, height);
+            if (previousFrame.dispose == DISPOSAL_PREVIOUS && !onBlankCanvas) {
+                copyRect(previousScratch, dest, previousFrame);
             }
         }
 
+        // Keep what this frame covers if the next one has to restore it.
+        if (currentFrame.dispose == DISPOSAL_PREVIOUS) {
+            if (previousScratch == null) {
+                previousScratch = new int[width * height];
+            }
+            copyRect(dest, previousScratch, currentFrame);
+        }
+
+        int save = 0;
+        if (currentFrame.transparency) {
+            save = act[currentFrame.transIndex];
+            act[currentFrame.transIndex] = 0; // set transparent color if specified
+        }
+
         decodeBitmapData(currentFrame, mainPixels);
         int pass = 1;
         int inc = 8;
@@ -254,9 +373,39 @@ public class GifDecoder {
             }
         }
 
-        currentImage.getPixels(copyScratch, 0, width, 0, 0, width, height);
-        previousImage.setPixels(copyScratch, 0, width, 0, 0, width, height);
-        currentImage.setPixels(dest, 0, width, 0, 0, width, height);
+        // Reset the transparent pixel in the color table
+        if (currentFrame.transparency) {
+            act[currentFrame.transIndex] = save;
+        }
+        return true;
+    }
+
+    /**
+     * Copies the part of the canvas covered by a frame between canvas sized arrays.
+     */
+    private void copyRect(int[] src, int[] dst, GifFrame frame) {
+        int rows = Math.min(frame.ih, height - frame.iy);
+        int cols = Math.min(frame.iw, width - frame.ix);
+        for (int i = 0; i < rows; i++) {
+            int n = (frame.iy + i) * width + frame.ix;
+            System.arraycopy(src, n, dst, n, cols);
+        }
+    }
+
+    /**
+     * Tells whether a frame, and those after it, can be drawn without knowing what came before it:
+     * it is the first frame, it paints every pixel of the canvas, or the frame before it is cleared
+     * to the background over the whole canvas. A frame that paints the whole canvas but is disposed
+     * to previous does not count, because the next frame restores the canvas from before it.
+     */
+    private boolean isKeyframe(GifFrame frame, GifFrame previousFrame) {
+        return previousFrame == null
+                || (!frame.transparency && coversCanvas(frame) && frame.dispose != DISPOSAL_PREVIOUS)
+                || (previousFrame.dispose == DISPOSAL_BACKGROUND && coversCanvas(previousFrame));
+    }
+
+    private boolean coversCanvas(GifFrame frame) {
+        return frame.ix == 0 && frame.iy == 0 && frame.iw >= width && frame.ih >= height;
     }
 
     /**
@@ -391,6 +540,7 @@ public class GifDecoder {
         status = STATUS_OK;
         frameCount = 0;
         framePointer = -1;
+        decodedIndex = -1;
         frames = new ArrayList<GifFrame>();
         gct = null;
     }
@@ -575,12 +725,15 @@ public class GifDecoder {
 
         currentFrame.bufferFrameStart = rawData.position(); //Save this as the decoding position pointer
 
-        decodeBitmapData(null, mainPixels); // false decode pixel data to advance buffer
-        skip();
+        // Pixel data is only decoded when the frame is drawn, so step over it here.
+        read(); // LZW minimum code size
+        skipBlocks();
         if (err()) {
             return;
         }
 
+        currentFrame.keyframe = isKeyframe(currentFrame, frameCount > 0 ? frames.get(frameCount - 1) : null)
+                ? frameCount : frames.get(frameCount - 1).keyframe;
         frameCount++;
         frames.add(currentFrame); // add image to frame
     }
@@ -604,10 +757,7 @@ public class GifDecoder {
         //Now that we know the size, init scratch arrays
         mainPixels = new byte[width * height];
         mainScratch = new int[width * height];
-        copyScratch = new int[width * height];
-
-        previousImage = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
-        currentImage = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        previousScratch = null;
     }
 
     /**
@@ -641,4 +791,19 @@ public class GifDecoder {
             readBlock();
         } while ((blockSize > 0) && !err());
     }
+
+    /**
+     * Like {@link #skip()}, but moves past the blocks without copying them out.
+     */
+    private void skipBlocks() {
+        try {
+            int size;
+            while ((size = rawData.get() & 0xff) > 0) {
+                rawData.position(rawData.position() + size);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Error Skipping Blocks", e);
+            status = STATUS_FORMAT_ERROR;
+        }
+    }
 }
\ No newline at end of file
@@ -11,9 +11,17 @@ import androidx.annotation.Nullable;
 import android.util.Log;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 public class AnimatedGifEncoder {
@@ -23,6 +31,9 @@ public class AnimatedGifEncoder {
     // automatically.
     private static final double MIN_TRANSPARENT_PERCENTAGE = 4d;
 
+    // Upper bound on the pixels kept from each bitmap passed to addPaletteSample().
+    private static final int PALETTE_SAMPLE_PIXELS = 16 * 1024;
+
     private int width; // image size
 
     private int height;
@@ -33,8 +44,6 @@ public class AnimatedGifEncoder {
 
     private Integer transparent = null; // transparent color if given
 
-    private int transIndex; // transparent index in color table
-
     private int repeat = -1; // no repeat
 
     private int delay = 0; // frame delay (hundredths)
@@ -43,17 +52,7 @@ public class AnimatedGifEncoder {
 
     private OutputStream out;
 
-    private Bitmap image; // current frame
-
-    private byte[] pixels; // BGR byte array from frame
-
-    private byte[] indexedPixels; // converted frame indexed to palette
-
-    private int colorDepth; // number of bit planes
-
-    private byte[] colorTab; // RGB palette
-
-    private boolean[] usedEntry = new boolean[256]; // active palette entries
+    private int colorDepth = 8; // number of bit planes
 
     private int palSize = 7; // color table size (bits-1)
 
@@ -67,7 +66,79 @@ public class AnimatedGifEncoder {
 
     private int sample = 10; // default sample interval for quantizer
 
-    private boolean hasTransparentPixels;
+    // Each frame being quantized holds its own pixel, index and inverse map buffers, so only a few
+    // run at once however many cores there are.
+    public static final int MAX_PARALLELISM = 4;
+
+    private int parallelism = 1; // number of frames quantized concurrently
+
+    private ExecutorService quantizer; // null unless parallelism > 1
+
+    private final ArrayDeque<Future<Frame>> pendingFrames = new ArrayDeque<>(); // in output order
+
+    private boolean globalPalette = false; // one color table shared by all frames
+
+    private ByteArrayOutputStream paletteSamples; // BGR pixels collected for the global palette
+
+    private NeuQuant globalQuantizer; // trained once when the global palette is in use
+
+    private byte[] globalColorTab; // RGB palette shared by all frames
+
+    private boolean frameDifferencing = false; // encode frames as changes to the previous one
+
+    private int[] previousPixels; // ARGB pixels of the previous frame, if it can be differenced
+
+    private int previousWidth, previousHeight;
+
+    private int[] argbScratch; // ARGB pixels of the frame being added, reused across frames
+
+    private final ArrayDeque<Frame> framePool = new ArrayDeque<>(); // written frames, for reuse
+
+    /**
+     * A frame between pixel extraction and output. Everything that affects how the frame is written
+     * is captured when it is added, because quantization may finish after later frames have
+     * changed the encoder settings. Frames are pooled once written, and their arrays are only
+     * reallocated when a larger frame comes along, so the first <code>width * height</code> (times
+     * 3 for BGR) entries are the valid ones.
+     */
+    private static class Frame {
+        int x, y; // position on the logical screen
+        int width, height;
+        int delay;
+        int dispose;
+        Integer transparent;
+        boolean hasTransparentPixels;
+        byte[] pixels; // BGR byte array from frame
+        byte[] indexedPixels; // converted frame indexed to palette
+        byte[] colorTab; // RGB palette
+        boolean[] usedEntry = new boolean[256]; // active palette entries
+        int transIndex; // transparent index in color table
+        boolean differenced; // cropped to the pixels that changed since the previous frame
+        boolean[] unchanged; // pixels equal to the previous frame, when differenced
+        int changedPixels; // number of false entries in unchanged
+        byte[] changedBgr; // BGR values of the changed pixels, to train the quantizer on
+        boolean transparentUnchanged; // unchanged pixels are written with transIndex
+        short[] inverseMap; // scratch color cube for a per-frame quantizer
+
+        /**
+         * Sizes the per-pixel arrays for a frame of the given size and clears per-frame state.
+         */
+        void reset(int w, int h) {
+            int n = w * h;
+            width = w;
+            height = h;
+            if (pixels == null || pixels.length < n * 3) {
+                pixels = new byte[n * 3];
+                indexedPixels = new byte[n];
+            }
+            Arrays.fill(usedEntry, false);
+            colorTab = null;
+            transIndex = 0;
+            differenced = false;
+            changedPixels = 0;
+            transparentUnchanged = false;
+        }
+    }
 
     /**
      * Sets the delay time between each frame, or changes it for subsequent frames
@@ -159,31 +230,66 @@ public class AnimatedGifEncoder {
             } else {
                 setFrameSize(im.getWidth(), im.getHeight());
             }
-            image = im;
-            getImagePixels(); // convert to correct format if necessary
-            analyzePixels(); // build color table & map pixels
-            if (firstFrame) {
-                writeLSD(); // logical screen descriptor
-                writePalette(); // global color table
-                if (repeat >= 0) {
-                    // use NS app extension to indicate reps
-                    writeNetscapeExt();
-                }
+            // Pixels are always read on the caller's thread: the bitmap may be recycled or reused
+            // as soon as this method returns.
+            final Frame frame = getImagePixels(im, x, y); // convert to correct format if necessary
+            if (globalPalette && globalQuantizer == null) {
+                // Train before any frame is mapped, so every worker shares one finished network.
+                buildGlobalPalette(frame);
             }
-            writeGraphicCtrlExt(); // write graphic control extension
-            writeImageDesc(x, y); // image descriptor
-            if (!firstFrame) {
-                writePalette(); // local color table
+            if (quantizer == null) {
+                analyzePixels(frame); // build color table & map pixels
+                writeFrame(frame);
+            } else {
+                pendingFrames.add(quantizer.submit(new Callable<Frame>() {
+                    @Override
+                    public Frame call() {
+                        analyzePixels(frame);
+                        return frame;
+                    }
+                }));
+                // Write whatever is ready at the head of the queue, and block on the oldest frame
+                // once more frames are queued than there are workers, so that at most one frame
+                // more than the workers can take is held at a time.
+                while (!pendingFrames.isEmpty()
+                        && (pendingFrames.peek().isDone() || pendingFrames.size() > parallelism)) {
+                    writeFrame(pendingFrames.poll().get());
+                }
             }
-            writePixels(); // encode and write pixel data
-            firstFrame = false;
-        } catch (IOException e) {
+        } catch (IOException | ExecutionException e) {
+            ok = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             ok = false;
         }
 
         return ok;
     }
 
+    /**
+     * Writes a quantized frame, preceded by the file header blocks if it is the first one.
+     */
+    private void writeFrame(Frame frame) throws IOException {
+        if (firstFrame) {
+            writeLSD(frame); // logical screen descriptor
+            writePalette(frame); // global color table
+            if (repeat >= 0) {
+                // use NS app extension to indicate reps
+                writeNetscapeExt();
+            }
+        }
+        // With a global palette only the global color table is written.
+        boolean localPalette = !firstFrame && !globalPalette;
+        writeGraphicCtrlExt(frame); // write graphic control extension
+        writeImageDesc(frame, localPalette); // image descriptor
+        if (localPalette) {
+            writePalette(frame); // local color table
+        }
+        writePixels(frame); // encode and write pixel data
+        firstFrame = false;
+        framePool.add(frame);
+    }
+
     /**
      * Flushes any pending data and closes output file. If writing to an
      * OutputStream, the stream is not closed.
@@ -194,25 +300,68 @@ public class AnimatedGifEncoder {
         boolean ok = true;
         started = false;
         try {
+            while (!pendingFrames.isEmpty()) {
+                writeFrame(pendingFrames.poll().get());
+            }
             out.write(0x3b); // GIF trailer
             out.flush();
+        } catch (IOException | ExecutionException e) {
+            ok = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ok = false;
+        } finally {
+            ok &= release();
+        }
+        return ok;
+    }
+
+    /**
+     * Stops encoding without writing the rest of the file: frames still being quantized are
+     * discarded, the worker threads are stopped and the output file is closed. Callers that give up
+     * after a failed <code>addFrame</code> must invoke this (or <code>finish</code>) so that the
+     * encoder does not keep those resources. Does nothing if encoding has not been started.
+     */
+    public void abort() {
+        if (!started)
+            return;
+        started = false;
+        release();
+    }
+
+    /**
+     * Closes the output file if it was opened by this encoder, stops the worker threads and resets
+     * for subsequent use.
+     *
+     * @return false if the output file could not be closed.
+     */
+    private boolean release() {
+        boolean ok = true;
+        try {
             if (closeStream) {
                 out.close();
             }
         } catch (IOException e) {
             ok = false;
+        } finally {
+            for (Future<Frame> pending : pendingFrames) {
+                pending.cancel(true);
+            }
+            pendingFrames.clear();
+            if (quantizer != null) {
+                quantizer.shutdownNow();
+                quantizer = null;
+            }
+            out = null;
+            closeStream = false;
+            firstFrame = true;
+            paletteSamples = null;
+            globalQuantizer = null;
+            globalColorTab = null;
+            previousPixels = null;
+            argbScratch = null;
+            framePool.clear();
         }
-
-        // reset for subsequent use
-        transIndex = 0;
-        out = null;
-        image = null;
-        pixels = null;
-        indexedPixels = null;
-        colorTab = null;
-        closeStream = false;
-        firstFrame = true;
-
         return ok;
     }
 
@@ -243,6 +392,86 @@ public class AnimatedGifEncoder {
         sample = quality;
     }
 
+    /**
+     * Sets how many frames may be quantized at the same time. Color quantization and palette
+     * mapping of each frame are independent of the others, so with a value greater than 1 they run
+     * on a pool of that many worker threads while frames are still being added. Frames are always
+     * written in the order they were added. The default of 1 quantizes every frame on the calling
+     * thread. Must be invoked before <code>start</code>.
+     *
+     * @param threads int number of worker threads, from 1 to {@link #MAX_PARALLELISM}.
+     */
+    public void setParallelism(int threads) {
+        if (started) {
+            return;
+        }
+        parallelism = Math.max(1, Math.min(MAX_PARALLELISM, threads));
+    }
+
+    /**
+     * Sets whether all frames share a single color table. When enabled, one quantizer is trained on
+     * the pixels passed to <code>addPaletteSample</code> (or on the first frame if there are none),
+     * written as the global color table, and used to map every frame. This skips the per-frame
+     * training and the 768 byte local color table of each frame, at the cost of color fidelity
+     * for animations whose frames differ a lot in color. Must be invoked before <code>start</code>.
+     *
+     * @param enabled boolean true to share one color table.
+     */
+    public void setGlobalPalette(boolean enabled) {
+        if (started) {
+            return;
+        }
+        globalPalette = enabled;
+    }
+
+    /**
+     * Sets whether frames are encoded as differences from the previous frame. When enabled, a frame
+     * is cropped to the bounding box of the pixels that changed since the previous frame, and the
+     * unchanged pixels inside that box are written with a transparent index and "do not dispose",
+     * so the previous frame shows through. Mostly static animations get much smaller and cheaper to
+     * encode. Frames that have transparency, or are written with a transparent color or with a
+     * disposal code other than 0 or 1, are always written in full. Must be invoked before
+     * <code>start</code>.
+     *
+     * @param enabled boolean true to write only what changed between frames.
+     */
+    public void setFrameDifferencing(boolean enabled) {
+        if (started) {
+            return;
+        }
+        frameDifferencing = enabled;
+    }
+
+    /**
+     * Adds pixels of an image to the sample the global color table is trained on. Only a bounded,
+     * evenly spaced subset of the pixels is kept, so callers can pass several frames spread over the
+     * animation. Has no effect unless <code>setGlobalPalette(true)</code> was invoked, or once the
+     * first frame has been added.
+     *
+     * @param im Bitmap whose colors should be represented in the global color table.
+     */
+    public void addPaletteSample(@Nullable Bitmap im) {
+        if (im == null || !globalPalette || globalQuantizer != null) {
+            return;
+        }
+        int w = im.getWidth();
+        int h = im.getHeight();
+        int step = Math.max(1, (int) Math.ceil(Math.sqrt((double) w * h / PALETTE_SAMPLE_PIXELS)));
+        if (paletteSamples == null) {
+            paletteSamples = new ByteArrayOutputStream();
+        }
+        int[] row = new int[w];
+        for (int y = 0; y < h; y += step) {
+            im.getPixels(row, 0, w, 0, y, w, 1);
+            for (int x = 0; x < w; x += step) {
+                int pixel = row[x];
+                paletteSamples.write(pixel & 0xFF);
+                paletteSamples.write((pixel >> 8) & 0xFF);
+                paletteSamples.write((pixel >> 16) & 0xFF);
+            }
+        }
+    }
+
     /**
      * Sets the fixed GIF frame size for all the frames.
      * This should be called before start.
@@ -296,6 +525,9 @@ public class AnimatedGifEncoder {
         } catch (IOException e) {
             ok = false;
         }
+        if (ok && parallelism > 1 && quantizer == null) {
+            quantizer = Executors.newFixedThreadPool(parallelism);
+        }
         return started = ok;
     }
 
@@ -311,6 +543,9 @@ public class AnimatedGifEncoder {
             out = new BufferedOutputStream(new FileOutputStream(file));
             ok = start(out);
             closeStream = true;
+            if (!ok) {
+                release();
+            }
         } catch (IOException e) {
             ok = false;
         }
@@ -318,44 +553,139 @@ public class AnimatedGifEncoder {
     }
 
     /**
-     * Analyzes image colors and creates color map.
+     * Analyzes image colors and creates color map. Only touches the given frame, so it is safe to
+     * run for several frames concurrently.
      */
-    private void analyzePixels() {
-        int len = pixels.length;
-        int nPix = len / 3;
-        indexedPixels = new byte[nPix];
-        NeuQuant nq = new NeuQuant(pixels, len, sample);
-        // initialize quantizer
-        colorTab = nq.process(); // create reduced palette
-        // convert map from BGR to RGB
-        for (int i = 0; i < colorTab.length; i += 3) {
-            byte temp = colorTab[i];
-            colorTab[i] = colorTab[i + 2];
-            colorTab[i + 2] = temp;
-            usedEntry[i / 3] = false;
+    private void analyzePixels(Frame frame) {
+        byte[] pixels = frame.pixels;
+        boolean[] unchanged = frame.differenced ? frame.unchanged : null;
+        int nPix = frame.width * frame.height;
+        int len = nPix * 3;
+        byte[] indexedPixels = frame.indexedPixels;
+        boolean[] usedEntry = frame.usedEntry;
+        NeuQuant nq;
+        byte[] colorTab;
+        if (globalQuantizer != null) {
+            nq = globalQuantizer;
+            colorTab = globalColorTab;
+        } else {
+            // Pixels left over from the previous frame need no palette entries of their own.
+            byte[] training = pixels;
+            int trainingLen = len;
+            if (unchanged != null && frame.changedPixels > 0) {
+                training = changedPixels(frame, nPix);
+                trainingLen = frame.changedPixels * 3;
+            }
+            nq = new NeuQuant(training, trainingLen, sample);
+            if (frame.inverseMap == null) {
+                frame.inverseMap = new short[NeuQuant.INVERSE_MAP_SIZE];
+            }
+            // initialize quantizer
+            colorTab = nq.process(frame.inverseMap); // create reduced palette
+            toRgb(colorTab);
         }
         // map image pixels to new palette
         int k = 0;
-        for (int i = 0; i < nPix; i++) {
-            int index = nq.map(pixels[k++] & 0xff, pixels[k++] & 0xff, pixels[k++] & 0xff);
+        for (int i = 0; i < nPix; i++, k += 3) {
+            if (unchanged != null && unchanged[i]) {
+                continue;
+            }
+            int index = nq.lookup(pixels[k] & 0xff, pixels[k + 1] & 0xff, pixels[k + 2] & 0xff);
             usedEntry[index] = true;
             indexedPixels[i] = (byte) index;
         }
-        pixels = null;
-        colorDepth = 8;
-        palSize = 7;
-        // get closest match to transparent color if specified
-        if (transparent != null) {
-            transIndex = findClosest(transparent);
-        } else if (hasTransparentPixels) {
-            transIndex = findClosest(Color.TRANSPARENT);
+        frame.colorTab = colorTab;
+        if (unchanged != null) {
+            // Unchanged pixels are made transparent with a palette entry no changed pixel uses. If
+            // every entry is in use they are simply drawn again.
+            int free = -1;
+            for (int i = 0; i < usedEntry.length && free < 0; i++) {
+                if (!usedEntry[i]) {
+                    free = i;
+                }
+            }
+            frame.transparentUnchanged = free >= 0;
+            frame.transIndex = Math.max(free, 0);
+            k = 0;
+            for (int i = 0; i < nPix; i++, k += 3) {
+                if (!unchanged[i]) {
+                    continue;
+                }
+                int index = free;
+                if (index < 0) {
+                    index = nq.lookup(pixels[k] & 0xff, pixels[k + 1] & 0xff, pixels[k + 2] & 0xff);
+                    usedEntry[index] = true;
+                }
+                indexedPixels[i] = (byte) index;
+            }
+        } else if (frame.transparent != null) {
+            // get closest match to transparent color if specified
+            frame.transIndex = findClosest(frame, frame.transparent);
+        } else if (frame.hasTransparentPixels) {
+            frame.transIndex = findClosest(frame, Color.TRANSPARENT);
+        }
+    }
+
+    /**
+     * Trains the shared quantizer on the collected palette samples, falling back to the pixels of
+     * the first frame when no samples were added.
+     */
+    private void buildGlobalPalette(Frame first) {
+        byte[] samples;
+        int len;
+        if (paletteSamples != null && paletteSamples.size() > 0) {
+            samples = paletteSamples.toByteArray();
+            len = samples.length;
+        } else {
+            samples = first.pixels;
+            len = first.width * first.height * 3;
+        }
+        paletteSamples = null;
+        NeuQuant nq = new NeuQuant(samples, len, sample);
+        globalColorTab = nq.process();
+        toRgb(globalColorTab);
+        globalQuantizer = nq;
+    }
+
+    /**
+     * Packs the BGR values of the changed pixels of a differenced frame.
+     */
+    private static byte[] changedPixels(Frame frame, int nPix) {
+        if (frame.changedBgr == null || frame.changedBgr.length < frame.changedPixels * 3) {
+            frame.changedBgr = new byte[frame.pixels.length];
+        }
+        byte[] pixels = frame.pixels;
+        byte[] changed = frame.changedBgr;
+        boolean[] unchanged = frame.unchanged;
+        int k = 0;
+        for (int i = 0; i < nPix; i++) {
+            if (!unchanged[i]) {
+                int j = i * 3;
+                changed[k++] = pixels[j];
+                changed[k++] = pixels[j + 1];
+                changed[k++] = pixels[j + 2];
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Converts a palette from the quantizer's BGR order to RGB in place.
+     */
+    private static void toRgb(byte[] colorTab) {
+        for (int i = 0; i < colorTab.length; i += 3) {
+            byte temp = colorTab[i];
+            colorTab[i] = colorTab[i + 2];
+            colorTab[i + 2] = temp;
         }
     }
 
     /**
      * Returns index of palette color closest to c
      */
-    private int findClosest(int color) {
+    private static int findClosest(Frame frame, int color) {
+        byte[] colorTab = frame.colorTab;
+        boolean[] usedEntry = frame.usedEntry;
         if (colorTab == null)
             return -1;
         int r = Color.red(color);
@@ -380,9 +710,10 @@ public class AnimatedGifEncoder {
     }
 
     /**
-     * Extracts image pixels into byte array "pixels"
+     * Extracts image pixels into the BGR byte array of a frame. Works entirely in buffers that are
+     * sized once and reused, so adding a frame does not allocate in the steady state.
      */
-    private void getImagePixels() {
+    private Frame getImagePixels(Bitmap image, int x, int y) {
         int w = image.getWidth();
         int h = image.getHeight();
 
@@ -390,54 +721,160 @@ public class AnimatedGifEncoder {
             // create new image with right size/format
             Bitmap temp = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
             Canvas canvas = new Canvas(temp);
-            canvas.drawBitmap(temp, 0, 0, null);
+            canvas.drawBitmap(image, 0, 0, null);
             image = temp;
+            w = width;
+            h = height;
+        }
+        int n = w * h;
+        if (argbScratch == null || argbScratch.length < n) {
+            argbScratch = new int[n];
         }
-        int[] pixelsInt = new int[w * h];
+        int[] pixelsInt = argbScratch;
         image.getPixels(pixelsInt, 0, w, 0, 0, w, h);
 
-        // The algorithm requires 3 bytes per pixel as RGB.
-        pixels = new byte[pixelsInt.length * 3];
-
-        int pixelsIndex = 0;
-        hasTransparentPixels = false;
         int totalTransparentPixels = 0;
-        for (final int pixel : pixelsInt) {
-            if (pixel == Color.TRANSPARENT) {
+        for (int i = 0; i < n; i++) {
+            if (pixelsInt[i] == Color.TRANSPARENT) {
                 totalTransparentPixels++;
             }
-            pixels[pixelsIndex++] = (byte) (pixel & 0xFF);
-            pixels[pixelsIndex++] = (byte) ((pixel >> 8) & 0xFF);
-            pixels[pixelsIndex++] = (byte) ((pixel >> 16) & 0xFF);
         }
 
-        double transparentPercentage = 100 * totalTransparentPixels / (double) pixelsInt.length;
+        double transparentPercentage = 100 * totalTransparentPixels / (double) n;
         // Assume images with greater where more than n% of the pixels are transparent actually have
         // transparency. See issue #214.
-        hasTransparentPixels = transparentPercentage > MIN_TRANSPARENT_PERCENTAGE;
+        boolean hasTransparentPixels = transparentPercentage > MIN_TRANSPARENT_PERCENTAGE;
         if (Log.isLoggable(TAG, Log.DEBUG)) {
             Log.d(TAG, "got pixels for frame with " + transparentPercentage
                     + "% transparent pixels");
         }
+
+        Frame frame = framePool.isEmpty() ? new Frame() : framePool.poll();
+        frame.reset(width, height);
+        frame.x = x;
+        frame.y = y;
+        frame.delay = delay;
+        frame.dispose = dispose;
+        frame.transparent = transparent;
+        frame.hasTransparentPixels = hasTransparentPixels;
+
+        // Only a frame that is left in place on screen can be the base of the next difference.
+        boolean keepsCanvas = transparent == null && !hasTransparentPixels && dispose <= 1
+                && x == 0 && y == 0;
+        if (keepsCanvas && previousPixels != null && previousWidth == w && previousHeight == h) {
+            differencePixels(frame, pixelsInt, previousPixels, w, h);
+        } else {
+            toBgr(pixelsInt, 0, 0, w, h, w, frame.pixels);
+        }
+        if (frameDifferencing && keepsCanvas) {
+            // The two ARGB buffers trade places: this frame becomes the base of the next one.
+            argbScratch = previousPixels;
+            previousPixels = pixelsInt;
+            previousWidth = w;
+            previousHeight = h;
+        } else {
+            previousPixels = null;
+        }
+        return frame;
+    }
+
+    /**
+     * Crops a frame to the bounding box of the pixels that differ from the previous frame, and marks
+     * which pixels inside the box are unchanged.
+     */
+    private static void differencePixels(Frame frame, int[] current, int[] previous, int w, int h) {
+        int left = w;
+        int top = h;
+        int right = -1;
+        int bottom = -1;
+        for (int row = 0; row < h; row++) {
+            for (int col = 0, i = row * w; col < w; col++, i++) {
+                if (current[i] != previous[i]) {
+                    if (top > row) {
+                        top = row;
+                    }
+                    bottom = row;
+                    if (left > col) {
+                        left = col;
+                    }
+                    if (right < col) {
+                        right = col;
+                    }
+                }
+            }
+        }
+        if (right < 0) {
+            // Nothing changed, but a frame is still needed to carry the delay.
+            left = top = right = bottom = 0;
+        }
+
+        int boxWidth = right - left + 1;
+        int boxHeight = bottom - top + 1;
+        if (frame.unchanged == null || frame.unchanged.length < boxWidth * boxHeight) {
+            frame.unchanged = new boolean[frame.indexedPixels.length];
+        }
+        boolean[] unchanged = frame.unchanged;
+        int changedPixels = 0;
+        int k = 0;
+        for (int row = top; row <= bottom; row++) {
+            for (int i = row * w + left, end = i + boxWidth; i < end; i++) {
+                unchanged[k] = current[i] == previous[i];
+                if (!unchanged[k]) {
+                    changedPixels++;
+                }
+                k++;
+            }
+        }
+
+        frame.x = left;
+        frame.y = top;
+        frame.width = boxWidth;
+        frame.height = boxHeight;
+        toBgr(current, left, top, boxWidth, boxHeight, w, frame.pixels);
+        frame.differenced = true;
+        frame.changedPixels = changedPixels;
+    }
+
+    /**
+     * Copies a rectangle of ARGB pixels into a BGR byte array.
+     */
+    private static void toBgr(int[] argb, int left, int top, int w, int h, int stride,
+                              byte[] pixels) {
+        // The algorithm requires 3 bytes per pixel as RGB.
+        int pixelsIndex = 0;
+        for (int row = top; row < top + h; row++) {
+            for (int i = row * stride + left, end = i + w; i < end; i++) {
+                int pixel = argb[i];
+                pixels[pixelsIndex++] = (byte) (pixel & 0xFF);
+                pixels[pixelsIndex++] = (byte) ((pixel >> 8) & 0xFF);
+                pixels[pixelsIndex++] = (byte) ((pixel >> 16) & 0xFF);
+            }
+        }
     }
 
     /**
      * Writes Graphic Control Extension
      */
-    private void writeGraphicCtrlExt() throws IOException {
+    private void writeGraphicCtrlExt(Frame frame) throws IOException {
         out.write(0x21); // extension introducer
         out.write(0xf9); // GCE label
         out.write(4); // data block size
         int transp, disp;
-        if (transparent == null && !hasTransparentPixels) {
-            transp = 0;
-            disp = 0; // dispose = no action
+        if (frame.differenced) {
+            // differenced frames are drawn over the previous frame, which has to stay in place
+            transp = frame.transparentUnchanged ? 1 : 0;
+            disp = 1; // dispose = do not dispose
         } else {
-            transp = 1;
-            disp = 2; // force clear if using transparent color
-        }
-        if (dispose >= 0) {
-            disp = dispose & 7; // user override
+            if (frame.transparent == null && !frame.hasTransparentPixels) {
+                transp = 0;
+                disp = 0; // dispose = no action
+            } else {
+                transp = 1;
+                disp = 2; // force clear if using transparent color
+            }
+            if (frame.dispose >= 0) {
+                disp = frame.dispose & 7; // user override
+            }
         }
         disp <<= 2;
 
@@ -447,23 +884,23 @@ public class AnimatedGifEncoder {
                 0 | // 7 user input - 0 = none
                 transp); // 8 transparency flag
 
-        writeShort(delay); // delay x 1/100 sec
-        out.write(transIndex); // transparent color index
+        writeShort(frame.delay); // delay x 1/100 sec
+        out.write(frame.transIndex); // transparent color index
         out.write(0); // block terminator
     }
 
     /**
      * Writes Image Descriptor
      */
-    private void writeImageDesc(int x, int y) throws IOException {
+    private void writeImageDesc(Frame frame, boolean localPalette) throws IOException {
         out.write(0x2c); // image separator
-        writeShort(x); // image position
-        writeShort(y);
-        writeShort(width); // image size
-        writeShort(height);
+        writeShort(frame.x); // image position
+        writeShort(frame.y);
+        writeShort(frame.width); // image size
+        writeShort(frame.height);
         // packed fields
-        if (firstFrame) {
-            // no LCT - GCT is used for first (or only) frame
+        if (!localPalette) {
+            // no LCT - GCT is used for first (or only) frame, or for all frames with a global palette
             out.write(0);
         } else {
             // specify normal LCT
@@ -478,10 +915,10 @@ public class AnimatedGifEncoder {
     /**
      * Writes Logical Screen Descriptor
      */
-    private void writeLSD() throws IOException {
+    private void writeLSD(Frame frame) throws IOException {
         // logical screen size
-        writeShort(width);
-        writeShort(height);
+        writeShort(frame.width);
+        writeShort(frame.height);
         // packed fields
         out.write((0x80 | // 1 : global color table flag = 1 (gct used)
                 0x70 | // 2-4 : color resolution = 7
@@ -509,7 +946,8 @@ public class AnimatedGifEncoder {
     /**
      * Writes color table
      */
-    private void writePalette() throws IOException {
+    private void writePalette(Frame frame) throws IOException {
+        byte[] colorTab = frame.colorTab;
         out.write(colorTab, 0, colorTab.length);
         int n = (3 * 256) - colorTab.length;
         for (int i = 0; i < n; i++) {
@@ -520,8 +958,8 @@ public class AnimatedGifEncoder {
     /**
      * Encodes and writes pixel data
      */
-    private void writePixels() throws IOException {
-        LZWEncoder encoder = new LZWEncoder(width, height, indexedPixels, colorDepth);
+    private void writePixels(Frame frame) throws IOException {
+        FastLZWEncoder encoder = new FastLZWEncoder(frame.width, frame.height, frame.indexedPixels, colorDepth);
         encoder.encode(out);
     }
 
@@ -0,0 +1,161 @@
+package io.flutter.plugins.imagepicker.gif_compression.gif_encoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * GIF LZW encoder that produces the same code stream as {@link LZWEncoder}, built for speed:
+ * <ul>
+ * <li>the string table is an open-addressed hash of primitive (prefix, suffix) keys with linear
+ * probing, sized at twice the largest code count,</li>
+ * <li>codes are packed into a 64-bit accumulator and drained four bytes at a time,</li>
+ * <li>output is assembled as full 255-byte sub-blocks in a local buffer and handed to the stream
+ * in bulk instead of one byte at a time.</li>
+ * </ul>
+ */
+class FastLZWEncoder {
+
+    private static final int BITS = 12; // largest code size allowed by GIF
+    private static final int MAX_CODES = 1 << BITS;
+    private static final int TABLE_BITS = BITS + 1;
+    private static final int TABLE_SIZE = 1 << TABLE_BITS; // keeps the load factor under 50%
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+    private static final int HASH_MULTIPLIER = 0x9E3779B1; // 2^32 / golden ratio
+
+    private static final int SUB_BLOCK_SIZE = 255;
+    private static final int SUB_BLOCKS_PER_FLUSH = 32;
+
+    private final int imgW, imgH;
+    private final byte[] pixAry;
+    private final int initCodeSize;
+
+    // (suffix << BITS | prefix) of each slot, or -1 when empty, and the code stored there
+    private final int[] keys = new int[TABLE_SIZE];
+    private final short[] codes = new short[TABLE_SIZE];
+
+    private OutputStream out;
+    private final byte[] buffer = new byte[(SUB_BLOCK_SIZE + 1) * SUB_BLOCKS_PER_FLUSH];
+    private int blockStart; // index of the length byte of the current sub-block
+    private int pos; // next free index in buffer
+
+    private long accum; // pending bits, least significant first
+    private int accumBits;
+
+    FastLZWEncoder(int width, int height, byte[] pixels, int colorDepth) {
+        imgW = width;
+        imgH = height;
+        pixAry = pixels;
+        initCodeSize = Math.max(2, colorDepth);
+    }
+
+    void encode(OutputStream os) throws IOException {
+        out = os;
+        os.write(initCodeSize); // write "initial code size" byte
+
+        blockStart = 0;
+        pos = 1;
+        accum = 0;
+        accumBits = 0;
+        compress(initCodeSize + 1); // compress and write the pixel data
+
+        os.write(0); // write block terminator
+    }
+
+    private void compress(int initBits) throws IOException {
+        final int clearCode = 1 << (initBits - 1);
+        final int eofCode = clearCode + 1;
+        final int[] keys = this.keys;
+        final short[] codes = this.codes;
+        final byte[] pixels = pixAry;
+        final int count = imgW * imgH;
+
+        int nBits = initBits;
+        int maxCode = (1 << nBits) - 1;
+        int freeEnt = clearCode + 2;
+
+        Arrays.fill(keys, -1);
+        emit(clearCode, nBits);
+
+        int ent = pixels[0] & 0xff;
+        for (int p = 1; p < count; p++) {
+            int c = pixels[p] & 0xff;
+            int key = (c << BITS) | ent;
+            int slot = (key * HASH_MULTIPLIER) >>> (32 - TABLE_BITS);
+            int found;
+            while ((found = keys[slot]) != key && found >= 0) {
+                slot = (slot + 1) & TABLE_MASK;
+            }
+            if (found == key) {
+                ent = codes[slot];
+                continue;
+            }
+
+            emit(ent, nBits);
+            // Widen codes once the next code to hand out no longer fits, exactly as LZWEncoder.
+            if (freeEnt > maxCode) {
+                nBits++;
+                maxCode = nBits == BITS ? MAX_CODES : (1 << nBits) - 1;
+            }
+            ent = c;
+            if (freeEnt < MAX_CODES) {
+                keys[slot] = key;
+                codes[slot] = (short) freeEnt++;
+            } else {
+                // Table full: emit a clear code and start over with the initial code size.
+                Arrays.fill(keys, -1);
+                freeEnt = clearCode + 2;
+                emit(clearCode, nBits);
+                nBits = initBits;
+                maxCode = (1 << nBits) - 1;
+            }
+        }
+
+        // Put out the final code.
+        emit(ent, nBits);
+        if (freeEnt > maxCode && nBits < BITS) {
+            nBits++;
+        }
+        emit(eofCode, nBits);
+
+        // At EOF, write the rest of the accumulator and whatever is buffered.
+        while (accumBits > 0) {
+            put((byte) accum);
+            accum >>>= 8;
+            accumBits -= 8;
+        }
+        accumBits = 0;
+        if (pos > blockStart + 1) {
+            buffer[blockStart] = (byte) (pos - blockStart - 1);
+            blockStart = pos;
+        }
+        out.write(buffer, 0, blockStart);
+    }
+
+    private void emit(int code, int nBits) throws IOException {
+        accum |= ((long) code) << accumBits;
+        accumBits += nBits;
+        if (accumBits >= 32) {
+            put((byte) accum);
+            put((byte) (accum >>> 8));
+            put((byte) (accum >>> 16));
+            put((byte) (accum >>> 24));
+            accum >>>= 32;
+            accumBits -= 32;
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        buffer[pos++] = b;
+        if (pos - blockStart > SUB_BLOCK_SIZE) {
+            // Sub-block complete: stamp its length and open the next one.
+            buffer[blockStart] = (byte) SUB_BLOCK_SIZE;
+            blockStart = pos;
+            if (blockStart == buffer.length) {
+                out.write(buffer, 0, blockStart);
+                blockStart = 0;
+            }
+            pos = blockStart + 1;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package io.flutter.plugins.imagepicker.gif_compression.gif_encoder;
 
+import java.util.Arrays;
+
 /*
  * NeuQuant Neural-Net Quantization Algorithm
  */
@@ -74,6 +76,16 @@ class NeuQuant {
 
     private static final int alpharadbias = (((int) 1) << alpharadbshift);
 
+    /* defs for the inverse colour map used by lookup() */
+    private static final int cubebits = 6; /* bits kept per channel */
+
+    private static final int cubeshift = 8 - cubebits;
+
+    private static final int cubesize = 1 << (3 * cubebits); /* 64x64x64 cells */
+
+    /* length of the array process() can be handed to hold the inverse colour map */
+    static final int INVERSE_MAP_SIZE = cubesize;
+
     /*
      * Types and Global Variables --------------------------
      */
@@ -100,6 +112,8 @@ class NeuQuant {
 
     /* radpower for precomputation */
 
+    private short[] inversemap; /* cell -> colour index, -1 until first looked up */
+
     /*
      * Initialise network in range (0,0,0) to (255,255,255) and set parameters
      * -----------------------------------------------------------------------
@@ -332,10 +346,42 @@ class NeuQuant {
         return (best);
     }
 
+    /*
+     * Cached equivalent of map(): colours are bucketed into a 64x64x64 cube whose cells are
+     * filled with the map() result for the cell centre the first time they are hit, so repeated
+     * colours cost a single array load. The cube is built by process(); concurrent callers may
+     * race to fill a cell but always store the same value.
+     * --------------------------------------------------------------------------------------------
+     */
+    public int lookup(int b, int g, int r) {
+        int cell = ((b >> cubeshift) << (2 * cubebits))
+                | ((g >> cubeshift) << cubebits)
+                | (r >> cubeshift);
+        int index = inversemap[cell];
+        if (index < 0) {
+            int half = 1 << (cubeshift - 1);
+            index = map((b & ~((1 << cubeshift) - 1)) | half,
+                    (g & ~((1 << cubeshift) - 1)) | half,
+                    (r & ~((1 << cubeshift) - 1)) | half);
+            inversemap[cell] = (short) index;
+        }
+        return index;
+    }
+
     public byte[] process() {
+        return process(new short[cubesize]);
+    }
+
+    /*
+     * Same as process(), building the inverse colour map in a caller-supplied array of
+     * INVERSE_MAP_SIZE entries so it can be reused across quantizers.
+     */
+    public byte[] process(short[] cube) {
         learn();
         unbiasnet();
         inxbuild();
+        inversemap = cube;
+        Arrays.fill(inversemap, (short) -1);
         return colorMap();
     }
 
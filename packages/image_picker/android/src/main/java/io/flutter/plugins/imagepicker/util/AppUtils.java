@@ -1,5 +1,6 @@
 package io.flutter.plugins.imagepicker.util;
 
+import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.Context;
 import android.util.Log;
@@ -19,9 +20,22 @@ public class AppUtils {
     private static AlertDialog alertDialog;
 
     /**
-     * Show progress dialog
+     * Show progress dialog. Safe to call from any thread; the dialog is shown on the UI thread.
      */
-    public static void showProgressDialog(String message) {
+    public static void showProgressDialog(final String message) {
+        Activity activity = ImagePickerDelegate.activity;
+        if (activity == null) {
+            return;
+        }
+        activity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                showProgressDialogOnUiThread(message);
+            }
+        });
+    }
+
+    private static void showProgressDialogOnUiThread(String message) {
         try {
             if (null != alertBuilder && null != alertDialog) {
                 if (alertDialog.isShowing()) {
@@ -60,9 +74,23 @@ public class AppUtils {
 
 
     /**
-     * Cancel progress dialog
+     * Cancel progress dialog. Safe to call from any thread; the dialog is dismissed on the UI
+     * thread.
      */
     public static void cancelProgressDialog() {
+        Activity activity = ImagePickerDelegate.activity;
+        if (activity == null) {
+            return;
+        }
+        activity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                cancelProgressDialogOnUiThread();
+            }
+        });
+    }
+
+    private static void cancelProgressDialogOnUiThread() {
         try {
             if (null != alertBuilder && null != alertDialog) {
                 if (alertDialog.isShowing()) {
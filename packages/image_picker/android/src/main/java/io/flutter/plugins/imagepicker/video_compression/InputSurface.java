@@ -0,0 +1,120 @@
+package io.flutter.plugins.imagepicker.video_compression;
+
+import android.annotation.TargetApi;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.os.Build;
+import android.view.Surface;
+
+/**
+ * Wraps the input {@link Surface} of a video encoder in an EGL window surface, so decoded frames
+ * can be drawn onto it with GLES and handed to the encoder with a presentation time.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+class InputSurface {
+
+    // Asks for a config the encoder can consume; not part of the public EGL14 constants.
+    private static final int EGL_RECORDABLE_ANDROID = 0x3142;
+
+    private EGLDisplay eglDisplay = EGL14.EGL_NO_DISPLAY;
+    private EGLContext eglContext = EGL14.EGL_NO_CONTEXT;
+    private EGLSurface eglSurface = EGL14.EGL_NO_SURFACE;
+    private Surface surface;
+
+    InputSurface(Surface surface) {
+        if (surface == null) {
+            throw new NullPointerException("surface");
+        }
+        this.surface = surface;
+        eglSetup();
+    }
+
+    private void eglSetup() {
+        eglDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        if (eglDisplay == EGL14.EGL_NO_DISPLAY) {
+            throw new RuntimeException("Unable to get EGL14 display");
+        }
+        int[] version = new int[2];
+        if (!EGL14.eglInitialize(eglDisplay, version, 0, version, 1)) {
+            eglDisplay = null;
+            throw new RuntimeException("Unable to initialize EGL14");
+        }
+
+        int[] attribList = {
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+                EGL_RECORDABLE_ANDROID, 1,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfigs = new int[1];
+        if (!EGL14.eglChooseConfig(
+                eglDisplay, attribList, 0, configs, 0, configs.length, numConfigs, 0)
+                || numConfigs[0] == 0) {
+            throw new RuntimeException("Unable to find a recordable RGB888 EGL config");
+        }
+
+        int[] contextAttribs = {EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE};
+        eglContext = EGL14.eglCreateContext(
+                eglDisplay, configs[0], EGL14.EGL_NO_CONTEXT, contextAttribs, 0);
+        checkEglError("eglCreateContext");
+        if (eglContext == null) {
+            throw new RuntimeException("Null EGL context");
+        }
+
+        int[] surfaceAttribs = {EGL14.EGL_NONE};
+        eglSurface = EGL14.eglCreateWindowSurface(eglDisplay, configs[0], surface, surfaceAttribs, 0);
+        checkEglError("eglCreateWindowSurface");
+        if (eglSurface == null) {
+            throw new RuntimeException("Null EGL surface");
+        }
+    }
+
+    /** Makes this surface's EGL context current on the calling thread. */
+    void makeCurrent() {
+        if (!EGL14.eglMakeCurrent(eglDisplay, eglSurface, eglSurface, eglContext)) {
+            throw new RuntimeException("eglMakeCurrent failed");
+        }
+    }
+
+    /** Submits the frame drawn so far to the encoder. */
+    boolean swapBuffers() {
+        return EGL14.eglSwapBuffers(eglDisplay, eglSurface);
+    }
+
+    /** Sets the presentation time of the next frame submitted, in nanoseconds. */
+    void setPresentationTime(long nsecs) {
+        EGLExt.eglPresentationTimeANDROID(eglDisplay, eglSurface, nsecs);
+    }
+
+    /** Releases the EGL resources and the encoder's surface. */
+    void release() {
+        if (eglDisplay != EGL14.EGL_NO_DISPLAY) {
+            EGL14.eglMakeCurrent(
+                    eglDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+            EGL14.eglDestroySurface(eglDisplay, eglSurface);
+            EGL14.eglDestroyContext(eglDisplay, eglContext);
+            EGL14.eglReleaseThread();
+            EGL14.eglTerminate(eglDisplay);
+        }
+        surface.release();
+
+        eglDisplay = EGL14.EGL_NO_DISPLAY;
+        eglContext = EGL14.EGL_NO_CONTEXT;
+        eglSurface = EGL14.EGL_NO_SURFACE;
+        surface = null;
+    }
+
+    private static void checkEglError(String msg) {
+        int error = EGL14.eglGetError();
+        if (error != EGL14.EGL_SUCCESS) {
+            throw new RuntimeException(msg + ": EGL error: 0x" + Integer.toHexString(error));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package io.flutter.plugins.imagepicker.video_compression;
+
+import android.annotation.TargetApi;
+import android.graphics.SurfaceTexture;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.os.Build;
+import android.view.Surface;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * A {@link Surface} a video decoder renders into, backed by an external GLES texture that is drawn
+ * onto the current EGL surface, scaled to fill it.
+ * <p>
+ * It has to be created and used on the thread that made an EGL context current, such as the one of
+ * an {@link InputSurface}.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+class OutputSurface implements SurfaceTexture.OnFrameAvailableListener {
+
+    // A decoder that has not produced a frame in this time is considered stuck.
+    private static final long FRAME_TIMEOUT_MS = 2500;
+
+    private static final String VERTEX_SHADER =
+            "uniform mat4 uSTMatrix;\n"
+                    + "attribute vec4 aPosition;\n"
+                    + "attribute vec4 aTextureCoord;\n"
+                    + "varying vec2 vTextureCoord;\n"
+                    + "void main() {\n"
+                    + "  gl_Position = aPosition;\n"
+                    + "  vTextureCoord = (uSTMatrix * aTextureCoord).xy;\n"
+                    + "}\n";
+
+    private static final String FRAGMENT_SHADER =
+            "#extension GL_OES_EGL_image_external : require\n"
+                    + "precision mediump float;\n"
+                    + "varying vec2 vTextureCoord;\n"
+                    + "uniform samplerExternalOES sTexture;\n"
+                    + "void main() {\n"
+                    + "  gl_FragColor = texture2D(sTexture, vTextureCoord);\n"
+                    + "}\n";
+
+    // Full screen triangle strip: X, Y, U, V for each corner.
+    private static final float[] VERTICES = {
+            -1.0f, -1.0f, 0.f, 0.f,
+            1.0f, -1.0f, 1.f, 0.f,
+            -1.0f, 1.0f, 0.f, 1.f,
+            1.0f, 1.0f, 1.f, 1.f,
+    };
+    private static final int FLOAT_SIZE_BYTES = 4;
+    private static final int VERTEX_STRIDE_BYTES = 4 * FLOAT_SIZE_BYTES;
+
+    private final Object frameSyncObject = new Object();
+    private final float[] stMatrix = new float[16];
+    private final FloatBuffer vertices;
+
+    private SurfaceTexture surfaceTexture;
+    private Surface surface;
+    private boolean frameAvailable;
+
+    private int program;
+    private int textureId;
+    private int stMatrixHandle;
+    private int positionHandle;
+    private int textureCoordHandle;
+
+    OutputSurface() {
+        vertices = ByteBuffer.allocateDirect(VERTICES.length * FLOAT_SIZE_BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        vertices.put(VERTICES).position(0);
+
+        setupProgram();
+        surfaceTexture = new SurfaceTexture(textureId);
+        surfaceTexture.setOnFrameAvailableListener(this);
+        surface = new Surface(surfaceTexture);
+    }
+
+    Surface getSurface() {
+        return surface;
+    }
+
+    /**
+     * Waits for the frame the decoder was last told to render, and latches it into the texture.
+     */
+    void awaitNewImage() {
+        synchronized (frameSyncObject) {
+            long deadline = System.currentTimeMillis() + FRAME_TIMEOUT_MS;
+            while (!frameAvailable) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new RuntimeException("Timed out waiting for a decoded frame");
+                }
+                try {
+                    frameSyncObject.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            frameAvailable = false;
+        }
+        checkGlError("before updateTexImage");
+        surfaceTexture.updateTexImage();
+    }
+
+    /** Draws the latest frame onto the current EGL surface. */
+    void drawImage() {
+        surfaceTexture.getTransformMatrix(stMatrix);
+
+        GLES20.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        GLES20.glUseProgram(program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+
+        vertices.position(0);
+        GLES20.glVertexAttribPointer(
+                positionHandle, 2, GLES20.GL_FLOAT, false, VERTEX_STRIDE_BYTES, vertices);
+        GLES20.glEnableVertexAttribArray(positionHandle);
+        vertices.position(2);
+        GLES20.glVertexAttribPointer(
+                textureCoordHandle, 2, GLES20.GL_FLOAT, false, VERTEX_STRIDE_BYTES, vertices);
+        GLES20.glEnableVertexAttribArray(textureCoordHandle);
+
+        GLES20.glUniformMatrix4fv(stMatrixHandle, 1, false, stMatrix, 0);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        checkGlError("glDrawArrays");
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, 0);
+    }
+
+    @Override
+    public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+        synchronized (frameSyncObject) {
+            frameAvailable = true;
+            frameSyncObject.notifyAll();
+        }
+    }
+
+    void release() {
+        surface.release();
+        surfaceTexture.release();
+        GLES20.glDeleteProgram(program);
+        GLES20.glDeleteTextures(1, new int[]{textureId}, 0);
+        surface = null;
+        surfaceTexture = null;
+    }
+
+    private void setupProgram() {
+        program = createProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+        textureCoordHandle = GLES20.glGetAttribLocation(program, "aTextureCoord");
+        stMatrixHandle = GLES20.glGetUniformLocation(program, "uSTMatrix");
+
+        int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        textureId = textures[0];
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+        GLES20.glTexParameteri(
+                GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(
+                GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(
+                GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(
+                GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        checkGlError("glTexParameter");
+    }
+
+    private static int createProgram(String vertexSource, String fragmentSource) {
+        int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, vertexSource);
+        int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+        int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vertexShader);
+        GLES20.glAttachShader(program, fragmentShader);
+        GLES20.glLinkProgram(program);
+        int[] linkStatus = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        // The shaders are owned by the program from here on.
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+        if (linkStatus[0] != GLES20.GL_TRUE) {
+            String log = GLES20.glGetProgramInfoLog(program);
+            GLES20.glDeleteProgram(program);
+            throw new RuntimeException("Could not link program: " + log);
+        }
+        return program;
+    }
+
+    private static int loadShader(int shaderType, String source) {
+        int shader = GLES20.glCreateShader(shaderType);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        int[] compiled = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
+        if (compiled[0] == 0) {
+            String log = GLES20.glGetShaderInfoLog(shader);
+            GLES20.glDeleteShader(shader);
+            throw new RuntimeException("Could not compile shader " + shaderType + ": " + log);
+        }
+        return shader;
+    }
+
+    private static void checkGlError(String op) {
+        int error = GLES20.glGetError();
+        if (error != GLES20.GL_NO_ERROR) {
+            throw new RuntimeException(op + ": glError " + error);
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package io.flutter.plugins.imagepicker.video_compression;
+
+import android.annotation.TargetApi;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMetadataRetriever;
+import android.media.MediaMuxer;
+import android.os.Build;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Re-encodes a video to H.264 in an MP4 file when it is larger or has a higher bitrate than
+ * allowed.
+ * <p>
+ * Frames go from the decoder to the encoder through GLES surfaces, so they are scaled on the GPU
+ * and never copied into Java memory. The audio track is copied over as is. The source's rotation is
+ * kept as a hint in the output rather than applied to the frames.
+ * <p>
+ * This is slow and blocking, so call it off the main thread.
+ */
+public class VideoTranscoder {
+
+    /** Receives how far a transcode is, from 0 to 1. */
+    public interface ProgressListener {
+        void onProgress(double progress);
+    }
+
+    private static final String OUTPUT_MIME_TYPE = "video/avc";
+    private static final int DEFAULT_FRAME_RATE = 30;
+    private static final int I_FRAME_INTERVAL_SECONDS = 1;
+    private static final long TIMEOUT_US = 10000;
+    // Used to estimate a source's bitrate when its container does not state it.
+    private static final float ESTIMATED_BITS_PER_PIXEL = 0.25f;
+    private static final int DEFAULT_AUDIO_BUFFER_SIZE = 256 * 1024;
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Audio an MP4 file can carry without re-encoding it.
+    private static final List<String> PASSTHROUGH_AUDIO_MIME_TYPES =
+            Arrays.asList("audio/mp4a-latm", "audio/3gpp", "audio/amr-wb");
+
+    private final Integer maxBitrate;
+    private final Integer maxHeight;
+
+    /**
+     * @param maxBitrate the highest video bitrate to keep, in bits per second, or null for no limit
+     * @param maxHeight  the largest the smaller side of the video may be, in pixels, so that 720
+     *                   caps both landscape and portrait videos at 720p, or null for no limit
+     */
+    public VideoTranscoder(Integer maxBitrate, Integer maxHeight) {
+        this.maxBitrate = maxBitrate;
+        this.maxHeight = maxHeight;
+    }
+
+    /**
+     * Writes a transcoded copy of {@code source} to {@code output} if it exceeds the limits.
+     *
+     * @return false, having written nothing, if the source already fits the limits or cannot be
+     * transcoded on this device as is
+     */
+    public boolean transcode(File source, File output, ProgressListener listener)
+            throws IOException {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return false;
+        }
+        return transcodeWithMediaCodec(source, output, listener);
+    }
+
+    /**
+     * Returns the width and height a video should be scaled to so that its smaller side fits
+     * {@code maxHeight}, rounded to even numbers as encoders require.
+     */
+    static int[] targetSize(int width, int height, Integer maxHeight) {
+        int shortSide = Math.min(width, height);
+        if (maxHeight == null || shortSide <= maxHeight) {
+            return new int[]{width, height};
+        }
+        double scale = maxHeight / (double) shortSide;
+        return new int[]{roundToEven(width * scale), roundToEven(height * scale)};
+    }
+
+    /**
+     * Returns the bitrate to encode at: the source's, lowered in proportion to the pixels dropped by
+     * scaling, and capped at {@code maxBitrate}.
+     */
+    static int targetBitrate(int sourceBitrate, long sourcePixels, long targetPixels, Integer maxBitrate) {
+        int bitrate = (int) (sourceBitrate * ((double) targetPixels / sourcePixels));
+        return maxBitrate == null ? bitrate : Math.min(bitrate, maxBitrate);
+    }
+
+    private static int roundToEven(double value) {
+        return Math.max(2, (int) Math.round(value / 2) * 2);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private boolean transcodeWithMediaCodec(File source, File output, ProgressListener listener)
+            throws IOException {
+        MediaExtractor videoExtractor = new MediaExtractor();
+        MediaExtractor audioExtractor = null;
+        MediaCodec decoder = null;
+        MediaCodec encoder = null;
+        InputSurface inputSurface = null;
+        OutputSurface outputSurface = null;
+        MediaMuxer muxer = null;
+        File temp = new File(output.getPath() + TEMP_SUFFIX);
+        boolean success = false;
+        try {
+            videoExtractor.setDataSource(source.getPath());
+            int videoTrack = findTrack(videoExtractor, "video/");
+            if (videoTrack < 0) {
+                return false;
+            }
+            MediaFormat inputFormat = videoExtractor.getTrackFormat(videoTrack);
+            int width = inputFormat.getInteger(MediaFormat.KEY_WIDTH);
+            int height = inputFormat.getInteger(MediaFormat.KEY_HEIGHT);
+            int frameRate = getInteger(inputFormat, MediaFormat.KEY_FRAME_RATE, DEFAULT_FRAME_RATE);
+            long durationUs = inputFormat.containsKey(MediaFormat.KEY_DURATION)
+                    ? inputFormat.getLong(MediaFormat.KEY_DURATION)
+                    : 0;
+
+            MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+            int rotation;
+            int sourceBitrate;
+            try {
+                retriever.setDataSource(source.getPath());
+                rotation = parseInt(retriever.extractMetadata(
+                        MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION));
+                sourceBitrate = getInteger(inputFormat, MediaFormat.KEY_BIT_RATE, parseInt(
+                        retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_BITRATE)));
+            } finally {
+                retriever.release();
+            }
+            if (sourceBitrate <= 0) {
+                sourceBitrate = (int) (ESTIMATED_BITS_PER_PIXEL * width * height * frameRate);
+            }
+
+            int[] size = targetSize(width, height, maxHeight);
+            int bitrate = targetBitrate(
+                    sourceBitrate, (long) width * height, (long) size[0] * size[1], maxBitrate);
+            if (size[0] == width && size[1] == height && bitrate >= sourceBitrate) {
+                return false;
+            }
+
+            MediaFormat audioFormat = null;
+            audioExtractor = new MediaExtractor();
+            audioExtractor.setDataSource(source.getPath());
+            int audioTrack = findTrack(audioExtractor, "audio/");
+            if (audioTrack >= 0) {
+                audioFormat = audioExtractor.getTrackFormat(audioTrack);
+                if (!PASSTHROUGH_AUDIO_MIME_TYPES.contains(audioFormat.getString(MediaFormat.KEY_MIME))) {
+                    return false;
+                }
+                audioExtractor.selectTrack(audioTrack);
+            }
+
+            MediaFormat outputFormat = MediaFormat.createVideoFormat(OUTPUT_MIME_TYPE, size[0], size[1]);
+            outputFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT,
+                    MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+            outputFormat.setInteger(MediaFormat.KEY_BIT_RATE, bitrate);
+            outputFormat.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
+            outputFormat.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL_SECONDS);
+            encoder = MediaCodec.createEncoderByType(OUTPUT_MIME_TYPE);
+            encoder.configure(outputFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            inputSurface = new InputSurface(encoder.createInputSurface());
+            inputSurface.makeCurrent();
+            encoder.start();
+
+            // Created once the encoder's EGL context is current, so both share it.
+            outputSurface = new OutputSurface();
+            decoder = MediaCodec.createDecoderByType(inputFormat.getString(MediaFormat.KEY_MIME));
+            decoder.configure(inputFormat, outputSurface.getSurface(), null, 0);
+            decoder.start();
+            videoExtractor.selectTrack(videoTrack);
+
+            muxer = new MediaMuxer(temp.getPath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            muxer.setOrientationHint(rotation);
+            int muxerAudioTrack = transcodeVideoTrack(videoExtractor, decoder, encoder,
+                    inputSurface, outputSurface, muxer, audioFormat, durationUs, listener);
+            if (audioFormat != null) {
+                copyAudioTrack(audioExtractor, muxer, muxerAudioTrack,
+                        getInteger(audioFormat, MediaFormat.KEY_MAX_INPUT_SIZE, DEFAULT_AUDIO_BUFFER_SIZE));
+            }
+            muxer.stop();
+            muxer.release();
+            muxer = null;
+
+            if (output.exists() && !output.delete() || !temp.renameTo(output)) {
+                throw new IOException("Could not move the transcoded video to " + output);
+            }
+            listener.onProgress(1);
+            success = true;
+            return true;
+        } finally {
+            if (decoder != null) {
+                decoder.release();
+            }
+            if (outputSurface != null) {
+                outputSurface.release();
+            }
+            if (encoder != null) {
+                encoder.release();
+            }
+            if (inputSurface != null) {
+                inputSurface.release();
+            }
+            if (muxer != null) {
+                muxer.release();
+            }
+            videoExtractor.release();
+            if (audioExtractor != null) {
+                audioExtractor.release();
+            }
+            if (!success) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Runs the video track through decoder, surfaces and encoder into the muxer, starting the muxer
+     * once the encoder's output format is known.
+     *
+     * @return the muxer's track for {@code audioFormat}, or -1 if that is null
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static int transcodeVideoTrack(
+            MediaExtractor extractor,
+            MediaCodec decoder,
+            MediaCodec encoder,
+            InputSurface inputSurface,
+            OutputSurface outputSurface,
+            MediaMuxer muxer,
+            MediaFormat audioFormat,
+            long durationUs,
+            ProgressListener listener) {
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        int muxerVideoTrack = -1;
+        int muxerAudioTrack = -1;
+        boolean inputDone = false;
+        boolean decoderDone = false;
+        boolean encoderDone = false;
+        int lastPercent = -1;
+
+        while (!encoderDone) {
+            if (!inputDone) {
+                int index = decoder.dequeueInputBuffer(TIMEOUT_US);
+                if (index >= 0) {
+                    int size = extractor.readSampleData(decoder.getInputBuffer(index), 0);
+                    if (size < 0) {
+                        decoder.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        inputDone = true;
+                    } else {
+                        decoder.queueInputBuffer(index, 0, size, extractor.getSampleTime(), 0);
+                        extractor.advance();
+                    }
+                }
+            }
+
+            // Drains the encoder before feeding it more, so the decoder never waits on it.
+            boolean decoderOutputAvailable = !decoderDone;
+            boolean encoderOutputAvailable = true;
+            while (decoderOutputAvailable || encoderOutputAvailable) {
+                int encoderStatus = encoder.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (encoderStatus == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                    encoderOutputAvailable = false;
+                } else if (encoderStatus == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    if (muxerVideoTrack >= 0) {
+                        throw new IllegalStateException("Encoder output format changed twice");
+                    }
+                    muxerVideoTrack = muxer.addTrack(encoder.getOutputFormat());
+                    if (audioFormat != null) {
+                        muxerAudioTrack = muxer.addTrack(audioFormat);
+                    }
+                    muxer.start();
+                } else if (encoderStatus >= 0) {
+                    ByteBuffer data = encoder.getOutputBuffer(encoderStatus);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+                        // Already part of the output format the muxer was given.
+                        info.size = 0;
+                    }
+                    if (info.size != 0) {
+                        if (muxerVideoTrack < 0) {
+                            throw new IllegalStateException("Encoder output before its format");
+                        }
+                        muxer.writeSampleData(muxerVideoTrack, data, info);
+                        if (durationUs > 0) {
+                            int percent = (int) Math.min(100, 100 * info.presentationTimeUs / durationUs);
+                            if (percent > lastPercent) {
+                                lastPercent = percent;
+                                listener.onProgress(percent / 100.0);
+                            }
+                        }
+                    }
+                    encoderDone = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                    encoder.releaseOutputBuffer(encoderStatus, false);
+                    if (encoderDone) {
+                        break;
+                    }
+                }
+                if (encoderStatus != MediaCodec.INFO_TRY_AGAIN_LATER || decoderDone) {
+                    continue;
+                }
+
+                int decoderStatus = decoder.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (decoderStatus == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                    decoderOutputAvailable = false;
+                } else if (decoderStatus >= 0) {
+                    boolean render = info.size != 0;
+                    decoder.releaseOutputBuffer(decoderStatus, render);
+                    if (render) {
+                        outputSurface.awaitNewImage();
+                        outputSurface.drawImage();
+                        inputSurface.setPresentationTime(info.presentationTimeUs * 1000);
+                        inputSurface.swapBuffers();
+                    }
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        encoder.signalEndOfInputStream();
+                        decoderDone = true;
+                        decoderOutputAvailable = false;
+                    }
+                }
+            }
+        }
+        return muxerAudioTrack;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void copyAudioTrack(
+            MediaExtractor extractor, MediaMuxer muxer, int muxerTrack, int bufferSize) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        int size;
+        while ((size = extractor.readSampleData(buffer, 0)) >= 0) {
+            int flags = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0
+                    ? MediaCodec.BUFFER_FLAG_KEY_FRAME
+                    : 0;
+            info.set(0, size, extractor.getSampleTime(), flags);
+            muxer.writeSampleData(muxerTrack, buffer, info);
+            extractor.advance();
+        }
+    }
+
+    private static int findTrack(MediaExtractor extractor, String mimePrefix) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith(mimePrefix)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int getInteger(MediaFormat format, String key, int defaultValue) {
+        if (!format.containsKey(key)) {
+            return defaultValue;
+        }
+        try {
+            return format.getInteger(key);
+        } catch (ClassCastException e) {
+            // Some extractors store the frame rate as a float.
+            return (int) format.getFloat(key);
+        }
+    }
+
+    private static int parseInt(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
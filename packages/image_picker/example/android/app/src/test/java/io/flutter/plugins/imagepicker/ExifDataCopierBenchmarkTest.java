@@ -0,0 +1,86 @@
+package io.flutter.plugins.imagepicker;
+
+import static io.flutter.plugins.imagepicker.benchmark.Benchmark.assertWithinBudget;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.PHOTO_HEIGHT;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.PHOTO_WIDTH;
+
+import io.flutter.plugins.imagepicker.benchmark.Benchmark;
+import io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Measures copying a JPEG's Exif segment into its scaled version: reading it from the source and
+ * writing it into the encoded output. The rest of ImageResizer decodes, scales and encodes with
+ * native Bitmap code that does not run off a device, so it has no benchmark here; GIFs are covered
+ * by GifPipelineBenchmarkTest.
+ */
+public class ExifDataCopierBenchmarkTest {
+  private static final int ROUNDS = 20;
+  // Bitmap.compress writes through a buffer of this size.
+  private static final int ENCODER_CHUNK_BYTES = 4096;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final ExifDataCopier exifDataCopier = new ExifDataCopier();
+
+  @Test
+  public void exif_Photo() throws Exception {
+    final File source = folder.newFile("photo.jpg");
+    byte[] jpeg = BenchmarkCorpus.photoJpeg();
+    FileOutputStream sourceOut = new FileOutputStream(source);
+    try {
+      sourceOut.write(jpeg);
+    } finally {
+      sourceOut.close();
+    }
+    // Stands in for the scaled JPEG: the source without its Exif segment.
+    FileInputStream sourceIn = new FileInputStream(source);
+    int segmentLength;
+    try {
+      segmentLength = exifDataCopier.readExifSegment(sourceIn.getFD()).length;
+    } finally {
+      sourceIn.close();
+    }
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    encoded.write(jpeg, 0, 2);
+    encoded.write(jpeg, 2 + segmentLength, jpeg.length - 2 - segmentLength);
+    final byte[] scaled = encoded.toByteArray();
+
+    Benchmark.Result result =
+        Benchmark.run(
+            "ExifDataCopier JPEG Exif",
+            PHOTO_WIDTH * PHOTO_HEIGHT / 1e6,
+            ROUNDS,
+            new Benchmark.Task() {
+              @Override
+              public long run() throws Exception {
+                FileInputStream in = new FileInputStream(source);
+                byte[] segment;
+                try {
+                  segment = exifDataCopier.readExifSegment(in.getFD());
+                } finally {
+                  in.close();
+                }
+                ByteArrayOutputStream output =
+                    new ByteArrayOutputStream(scaled.length + segment.length);
+                OutputStream out =
+                    exifDataCopier.injectExif(output, segment, PHOTO_WIDTH / 2, PHOTO_HEIGHT / 2);
+                for (int i = 0; i < scaled.length; i += ENCODER_CHUNK_BYTES) {
+                  out.write(scaled, i, Math.min(ENCODER_CHUNK_BYTES, scaled.length - i));
+                }
+                out.close();
+                return output.size();
+              }
+            });
+
+    // The output is the scaled image plus the Exif segment, so the size of the source.
+    assertWithinBudget(result, 256 * 1024, jpeg.length);
+  }
+}
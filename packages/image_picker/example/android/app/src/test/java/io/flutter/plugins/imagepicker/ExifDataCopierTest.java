@@ -0,0 +1,115 @@
+package io.flutter.plugins.imagepicker;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExifDataCopierTest {
+  // Start of image, then a JFIF segment.
+  private static final byte[] JPEG_HEAD = {
+    (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 4, 'J', 'F'
+  };
+  // Start of scan, then some data.
+  private static final byte[] JPEG_TAIL = {(byte) 0xFF, (byte) 0xDA, 0, 2, 1, 2, 3};
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final ExifDataCopier exifDataCopier = new ExifDataCopier();
+
+  @Test
+  public void readExifSegment_ReturnsTheWholeSegment() throws IOException {
+    byte[] segment = exifSegment(4000, 3000);
+    File jpeg = write(concat(JPEG_HEAD, segment, JPEG_TAIL));
+
+    FileInputStream inputStream = new FileInputStream(jpeg);
+    try {
+      assertArrayEquals(segment, exifDataCopier.readExifSegment(inputStream.getFD()));
+      assertThat(inputStream.getChannel().position(), equalTo(0L));
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  @Test
+  public void readExifSegment_WhenThereIsNone_ReturnsNull() throws IOException {
+    File jpeg = write(concat(JPEG_HEAD, JPEG_TAIL));
+
+    FileInputStream inputStream = new FileInputStream(jpeg);
+    try {
+      assertNull(exifDataCopier.readExifSegment(inputStream.getFD()));
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  @Test
+  public void injectExif_WritesSegmentAfterStartOfImageWithNewDimensions() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    OutputStream stream = exifDataCopier.injectExif(output, exifSegment(4000, 3000), 800, 600);
+    stream.write(JPEG_HEAD[0]);
+    stream.write(Arrays.copyOfRange(JPEG_HEAD, 1, JPEG_HEAD.length));
+    stream.write(JPEG_TAIL);
+
+    byte[] expected =
+        concat(
+            Arrays.copyOfRange(JPEG_HEAD, 0, 2),
+            exifSegment(800, 600),
+            Arrays.copyOfRange(JPEG_HEAD, 2, JPEG_HEAD.length),
+            JPEG_TAIL);
+    assertArrayEquals(expected, output.toByteArray());
+  }
+
+  /** An Exif segment with the width in IFD0 and the pixel dimensions in the Exif IFD. */
+  private static byte[] exifSegment(int width, int height) {
+    ByteBuffer tiff = ByteBuffer.allocate(8 + 2 + 2 * 12 + 4 + 2 + 2 * 12 + 4);
+    tiff.put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(8);
+    tiff.putShort((short) 2);
+    tiff.putShort((short) 0x0100).putShort((short) 4).putInt(1).putInt(width);
+    tiff.putShort((short) 0x8769).putShort((short) 4).putInt(1).putInt(8 + 2 + 2 * 12 + 4);
+    tiff.putInt(0);
+    tiff.putShort((short) 2);
+    tiff.putShort((short) 0xA002).putShort((short) 3).putInt(1).putShort((short) width);
+    tiff.putShort((short) 0);
+    tiff.putShort((short) 0xA003).putShort((short) 4).putInt(1).putInt(height);
+    tiff.putInt(0);
+
+    int length = 2 + 6 + tiff.capacity();
+    ByteBuffer segment = ByteBuffer.allocate(2 + length);
+    segment.put((byte) 0xFF).put((byte) 0xE1).putShort((short) length);
+    segment.put(new byte[] {'E', 'x', 'i', 'f', 0, 0}).put(tiff.array());
+    return segment.array();
+  }
+
+  private File write(byte[] bytes) throws IOException {
+    File file = folder.newFile();
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(bytes);
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] part : parts) {
+      out.write(part, 0, part.length);
+    }
+    return out.toByteArray();
+  }
+}
@@ -1,25 +1,42 @@
 package io.flutter.plugins.imagepicker;
 
 import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNot.not;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import android.Manifest;
 import android.app.Activity;
+import android.content.ClipData;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
+import io.flutter.plugins.imagepicker.video_compression.VideoTranscoder;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -27,18 +44,48 @@ public class ImagePickerDelegateTest {
   private static final double WIDTH = 10.0;
   private static final double HEIGHT = 10.0;
   private static final int IMAGE_QUALITY = 100;
+  private static final int VIDEO_BITRATE = 1000000;
 
   @Mock Activity mockActivity;
   @Mock ImageResizer mockImageResizer;
   @Mock MethodCall mockMethodCall;
   @Mock MethodChannel.Result mockResult;
+  @Mock EventChannel.EventSink mockEvents;
   @Mock ImagePickerDelegate.PermissionManager mockPermissionManager;
   @Mock ImagePickerDelegate.IntentResolver mockIntentResolver;
   @Mock FileUtils mockFileUtils;
   @Mock Intent mockIntent;
   @Mock ImagePickerCache cache;
+  @Mock ImagePickerDelegate.VideoTranscoderFactory mockVideoTranscoderFactory;
+  @Mock VideoTranscoder mockVideoTranscoder;
 
   ImagePickerDelegate.FileUriResolver mockFileUriResolver;
+  Executor backgroundExecutor = DIRECT_EXECUTOR;
+  Executor videoExecutor = DIRECT_EXECUTOR;
+
+  private static final Executor DIRECT_EXECUTOR =
+      new Executor() {
+        @Override
+        public void execute(Runnable command) {
+          command.run();
+        }
+      };
+
+  private static class QueuedExecutor implements Executor {
+    final List<Runnable> queue = new ArrayList<>();
+
+    @Override
+    public void execute(Runnable command) {
+      queue.add(command);
+    }
+
+    void runAll() {
+      for (Runnable command : queue) {
+        command.run();
+      }
+      queue.clear();
+    }
+  }
 
   private static class MockFileUriResolver implements ImagePickerDelegate.FileUriResolver {
     @Override
@@ -61,20 +108,26 @@ public class ImagePickerDelegateTest {
 
     when(mockFileUtils.getPathFromUri(any(Context.class), any(Uri.class)))
         .thenReturn("pathFromUri");
+    // Unless a test says otherwise, picked images are keyed on their path rather than their URI.
+    when(mockFileUtils.getLastModified(any(Context.class), any(Uri.class))).thenReturn(-1L);
 
-    when(mockImageResizer.resizeImageIfNeeded("pathFromUri", null, null, IMAGE_QUALITY))
+    when(mockImageResizer.resizeImageIfNeeded("pathFromUri", null, null, IMAGE_QUALITY, 0))
         .thenReturn("originalPath");
-    when(mockImageResizer.resizeImageIfNeeded("pathFromUri", WIDTH, HEIGHT, IMAGE_QUALITY))
+    when(mockImageResizer.resizeImageIfNeeded("pathFromUri", WIDTH, HEIGHT, IMAGE_QUALITY, 0))
         .thenReturn("scaledPath");
-    when(mockImageResizer.resizeImageIfNeeded("pathFromUri", WIDTH, null, IMAGE_QUALITY))
+    when(mockImageResizer.resizeImageIfNeeded("pathFromUri", WIDTH, null, IMAGE_QUALITY, 0))
         .thenReturn("scaledPath");
-    when(mockImageResizer.resizeImageIfNeeded("pathFromUri", null, HEIGHT, IMAGE_QUALITY))
+    when(mockImageResizer.resizeImageIfNeeded("pathFromUri", null, HEIGHT, IMAGE_QUALITY, 0))
         .thenReturn("scaledPath");
 
     mockFileUriResolver = new MockFileUriResolver();
 
     Uri mockUri = mock(Uri.class);
     when(mockIntent.getData()).thenReturn(mockUri);
+
+    // Either limit may be null.
+    when(mockVideoTranscoderFactory.create((Integer) any(), (Integer) any()))
+        .thenReturn(mockVideoTranscoder);
   }
 
   @Test
@@ -297,6 +350,36 @@ public class ImagePickerDelegateTest {
     verifyNoMoreInteractions(mockResult);
   }
 
+  @Test
+  public void onActivityResult_WhenImagePickedFromGallery_PassesMaxGifFrameRateToResizer() {
+    when(mockMethodCall.argument("maxWidth")).thenReturn(WIDTH);
+    when(mockMethodCall.argument("maxGifFrameRate")).thenReturn(15);
+    when(mockImageResizer.resizeImageIfNeeded("pathFromUri", WIDTH, null, IMAGE_QUALITY, 15))
+        .thenReturn("decimatedPath");
+
+    ImagePickerDelegate delegate = createDelegateWithPendingResultAndMethodCall();
+    delegate.onActivityResult(
+        ImagePickerDelegate.REQUEST_CODE_CHOOSE_IMAGE_FROM_GALLERY, Activity.RESULT_OK, mockIntent);
+
+    verify(mockResult).success("decimatedPath");
+    verifyNoMoreInteractions(mockResult);
+  }
+
+  @Test
+  public void onActivityResult_WhenImagePickedFromGallery_ClearsBitmapPoolAfterResize() {
+    when(mockMethodCall.argument("maxWidth")).thenReturn(WIDTH);
+
+    ImagePickerDelegate delegate = createDelegateWithPendingResultAndMethodCall();
+    delegate.onActivityResult(
+        ImagePickerDelegate.REQUEST_CODE_CHOOSE_IMAGE_FROM_GALLERY, Activity.RESULT_OK, mockIntent);
+
+    InOrder inOrder = inOrder(mockImageResizer);
+    inOrder
+        .verify(mockImageResizer)
+        .resizeImageIfNeeded("pathFromUri", WIDTH, null, IMAGE_QUALITY, 0);
+    inOrder.verify(mockImageResizer).clearBitmapPool();
+  }
+
   @Test
   public void
       onActivityResult_WhenImagePickedFromGallery_AndResizeNeeded_FinishesWithScaledImagePath() {
@@ -323,6 +406,146 @@ public class ImagePickerDelegateTest {
     verifyNoMoreInteractions(mockResult);
   }
 
+  @Test
+  public void onActivityResult_WhenVideoPickedFromGallery_AndTooLarge_FinishesWithTranscodedPath()
+      throws Exception {
+    when(mockMethodCall.argument("maxVideoBitrate")).thenReturn(VIDEO_BITRATE);
+    when(mockVideoTranscoder.transcode(
+            eq(new File("pathFromUri")),
+            any(File.class),
+            any(VideoTranscoder.ProgressListener.class)))
+        .thenReturn(true);
+
+    ImagePickerDelegate delegate = createDelegateWithPendingResultAndMethodCall();
+    delegate.onActivityResult(
+        ImagePickerDelegate.REQUEST_CODE_CHOOSE_VIDEO_FROM_GALLERY, Activity.RESULT_OK, mockIntent);
+
+    ArgumentCaptor<File> output = ArgumentCaptor.forClass(File.class);
+    verify(mockVideoTranscoder)
+        .transcode(
+            eq(new File("pathFromUri")),
+            output.capture(),
+            any(VideoTranscoder.ProgressListener.class));
+    verify(mockResult).success(output.getValue().getPath());
+    verifyNoMoreInteractions(mockResult);
+  }
+
+  @Test
+  public void onActivityResult_WhenVideoCannotBeTranscoded_FinishesWithOriginalPath()
+      throws Exception {
+    when(mockMethodCall.argument("maxVideoBitrate")).thenReturn(VIDEO_BITRATE);
+    when(mockVideoTranscoder.transcode(
+            any(File.class), any(File.class), any(VideoTranscoder.ProgressListener.class)))
+        .thenReturn(false);
+
+    ImagePickerDelegate delegate = createDelegateWithPendingResultAndMethodCall();
+    delegate.onActivityResult(
+        ImagePickerDelegate.REQUEST_CODE_CHOOSE_VIDEO_FROM_GALLERY, Activity.RESULT_OK, mockIntent);
+
+    verify(mockResult).success("pathFromUri");
+    verifyNoMoreInteractions(mockResult);
+  }
+
+  @Test
+  public void retrieveLostImage_WhenLostVideoIsTooLarge_FinishesWithTranscodedPath()
+      throws Exception {
+    when(cache.getCacheMap()).thenReturn(lostVideo("/videos/clip.mp4"));
+    when(mockVideoTranscoder.transcode(
+            any(File.class), any(File.class), any(VideoTranscoder.ProgressListener.class)))
+        .thenReturn(true);
+
+    ImagePickerDelegate delegate = createDelegate();
+    delegate.retrieveLostImage(mockResult);
+
+    ArgumentCaptor<File> output = ArgumentCaptor.forClass(File.class);
+    verify(mockVideoTranscoder)
+        .transcode(
+            eq(new File("/videos/clip.mp4")),
+            output.capture(),
+            any(VideoTranscoder.ProgressListener.class));
+    Map<String, Object> expected = lostVideo(output.getValue().getPath());
+    verify(mockResult).success(expected);
+    verifyNoMoreInteractions(mockResult);
+  }
+
+  @Test
+  public void retrieveLostImage_WhenVideosHaveTheSameName_TranscodesToDifferentFiles()
+      throws Exception {
+    when(cache.getCacheMap())
+        .thenReturn(lostVideo("/videos/a/clip.mp4"))
+        .thenReturn(lostVideo("/videos/b/clip.mp4"));
+    when(mockVideoTranscoder.transcode(
+            any(File.class), any(File.class), any(VideoTranscoder.ProgressListener.class)))
+        .thenReturn(true);
+
+    ImagePickerDelegate delegate = createDelegate();
+    delegate.retrieveLostImage(mock(MethodChannel.Result.class));
+    delegate.retrieveLostImage(mock(MethodChannel.Result.class));
+
+    ArgumentCaptor<File> outputs = ArgumentCaptor.forClass(File.class);
+    verify(mockVideoTranscoder, times(2))
+        .transcode(any(File.class), outputs.capture(), any(VideoTranscoder.ProgressListener.class));
+    assertThat(outputs.getAllValues().get(1), not(equalTo(outputs.getAllValues().get(0))));
+  }
+
+  @Test
+  public void retrieveLostImage_WhenVideoIsStillBeingTranscoded_WaitsForThatTranscode()
+      throws Exception {
+    QueuedExecutor queuedExecutor = new QueuedExecutor();
+    videoExecutor = queuedExecutor;
+    when(mockMethodCall.argument("maxVideoBitrate")).thenReturn(VIDEO_BITRATE);
+    when(cache.getCacheMap()).thenReturn(lostVideo("pathFromUri"));
+    when(mockVideoTranscoder.transcode(
+            any(File.class), any(File.class), any(VideoTranscoder.ProgressListener.class)))
+        .thenReturn(true);
+    MethodChannel.Result lostResult = mock(MethodChannel.Result.class);
+
+    // The activity is recreated while the picked video is being transcoded.
+    createDelegateWithPendingResultAndMethodCall()
+        .onActivityResult(
+            ImagePickerDelegate.REQUEST_CODE_CHOOSE_VIDEO_FROM_GALLERY,
+            Activity.RESULT_OK,
+            mockIntent);
+    createDelegate().retrieveLostImage(lostResult);
+    queuedExecutor.runAll();
+
+    ArgumentCaptor<File> output = ArgumentCaptor.forClass(File.class);
+    verify(mockVideoTranscoder)
+        .transcode(any(File.class), output.capture(), any(VideoTranscoder.ProgressListener.class));
+    verify(mockResult).success(output.getValue().getPath());
+    verify(lostResult).success(lostVideo(output.getValue().getPath()));
+  }
+
+  @Test
+  public void retrieveLostImage_WhenVideoIsBeingTranscodedWithOtherLimits_TranscodesAgain()
+      throws Exception {
+    QueuedExecutor queuedExecutor = new QueuedExecutor();
+    videoExecutor = queuedExecutor;
+    when(mockMethodCall.argument("maxVideoBitrate")).thenReturn(VIDEO_BITRATE);
+    Map<String, Object> lostVideo = lostVideo("pathFromUri");
+    lostVideo.put(ImagePickerCache.MAP_KEY_MAX_VIDEO_HEIGHT, 720);
+    when(cache.getCacheMap()).thenReturn(lostVideo);
+    when(mockVideoTranscoder.transcode(
+            any(File.class), any(File.class), any(VideoTranscoder.ProgressListener.class)))
+        .thenReturn(true);
+
+    createDelegateWithPendingResultAndMethodCall()
+        .onActivityResult(
+            ImagePickerDelegate.REQUEST_CODE_CHOOSE_VIDEO_FROM_GALLERY,
+            Activity.RESULT_OK,
+            mockIntent);
+    createDelegate().retrieveLostImage(mock(MethodChannel.Result.class));
+    queuedExecutor.runAll();
+
+    verify(mockVideoTranscoderFactory).create(VIDEO_BITRATE, null);
+    verify(mockVideoTranscoderFactory).create(VIDEO_BITRATE, 720);
+    ArgumentCaptor<File> outputs = ArgumentCaptor.forClass(File.class);
+    verify(mockVideoTranscoder, times(2))
+        .transcode(any(File.class), outputs.capture(), any(VideoTranscoder.ProgressListener.class));
+    assertThat(outputs.getAllValues().get(1), not(equalTo(outputs.getAllValues().get(0))));
+    verify(mockResult).success(outputs.getAllValues().get(0).getPath());
+  }
+
   @Test
   public void onActivityResult_WhenTakeImageWithCameraCanceled_FinishesWithNull() {
     ImagePickerDelegate delegate = createDelegateWithPendingResultAndMethodCall();
@@ -371,6 +594,230 @@ public class ImagePickerDelegateTest {
     verifyNoMoreInteractions(mockResult);
   }
 
+  @Test
+  public void onActivityResult_WhenImagePickedFromGallery_ResizesOnBackgroundExecutor() {
+    when(mockMethodCall.argument("maxWidth")).thenReturn(WIDTH);
+    QueuedExecutor queuedExecutor = new QueuedExecutor();
+    backgroundExecutor = queuedExecutor;
+
+    ImagePickerDelegate delegate = createDelegateWithPendingResultAndMethodCall();
+    delegate.onActivityResult(
+        ImagePickerDelegate.REQUEST_CODE_CHOOSE_IMAGE_FROM_GALLERY, Activity.RESULT_OK, mockIntent);
+
+    verify(mockResult, never()).success(any());
+    queuedExecutor.runAll();
+    verify(mockResult).success("scaledPath");
+    verifyNoMoreInteractions(mockResult);
+  }
+
+  @Test
+  public void onActivityResult_WhenResizeFails_FinishesWithError() {
+    when(mockMethodCall.argument("maxWidth")).thenReturn(WIDTH);
+    when(mockImageResizer.resizeImageIfNeeded("pathFromUri", WIDTH, null, IMAGE_QUALITY, 0))
+        .thenThrow(new RuntimeException("decode failed"));
+
+    ImagePickerDelegate delegate = createDelegateWithPendingResultAndMethodCall();
+    delegate.onActivityResult(
+        ImagePickerDelegate.REQUEST_CODE_CHOOSE_IMAGE_FROM_GALLERY, Activity.RESULT_OK, mockIntent);
+
+    verify(mockResult).error("resize_failed", "decode failed", null);
+    verifyNoMoreInteractions(mockResult);
+  }
+
+  @Test
+  public void onActivityResult_WhenResizeRunsOutOfMemory_FinishesWithError() {
+    when(mockMethodCall.argument("maxWidth")).thenReturn(WIDTH);
+    when(mockImageResizer.resizeImageIfNeeded("pathFromUri", WIDTH, null, IMAGE_QUALITY, 0))
+        .thenThrow(new OutOfMemoryError("bitmap too large"));
+
+    ImagePickerDelegate delegate = createDelegateWithPendingResultAndMethodCall();
+    delegate.onActivityResult(
+        ImagePickerDelegate.REQUEST_CODE_CHOOSE_IMAGE_FROM_GALLERY, Activity.RESULT_OK, mockIntent);
+
+    verify(mockResult).error("resize_failed", "bitmap too large", null);
+    verifyNoMoreInteractions(mockResult);
+  }
+
+  @Test
+  public void onActivityResult_WhenRemoteImagePickedFromGallery_ResizesFromFileDescriptor() {
+    when(mockMethodCall.argument("maxWidth")).thenReturn(WIDTH);
+    ParcelFileDescriptor mockDescriptor = mock(ParcelFileDescriptor.class);
+    FileDescriptor fileDescriptor = new FileDescriptor();
+    when(mockDescriptor.getFileDescriptor()).thenReturn(fileDescriptor);
+    when(mockDescriptor.getStatSize()).thenReturn(2048L);
+    when(mockFileUtils.openRemoteFileDescriptor(any(Context.class), any(Uri.class)))
+        .thenReturn(mockDescriptor);
+    when(mockFileUtils.getLastModified(any(Context.class), any(Uri.class))).thenReturn(1000L);
+    // The cache key tells versions of the content apart by their size and modification time.
+    when(mockImageResizer.resizeImageIfNeeded(
+            eq(fileDescriptor), eq(mockIntent.getData() + "|2048|1000"), eq("image_picker.jpg"),
+            eq(WIDTH), eq((Double) null), eq(IMAGE_QUALITY)))
+        .thenReturn("scaledFromDescriptor");
+
+    ImagePickerDelegate delegate = createDelegateWithPendingResultAndMethodCall();
+    delegate.onActivityResult(
+        ImagePickerDelegate.REQUEST_CODE_CHOOSE_IMAGE_FROM_GALLERY, Activity.RESULT_OK, mockIntent);
+
+    verify(mockResult).success("scaledFromDescriptor");
+    verifyNoMoreInteractions(mockResult);
+    verify(mockFileUtils, never()).getPathFromUri(any(Context.class), any(Uri.class));
+  }
+
+  @Test
+  public void onActivityResult_WhenRemoteImageHasNoModificationTime_ResizesWithoutCaching() {
+    when(mockMethodCall.argument("maxWidth")).thenReturn(WIDTH);
+    ParcelFileDescriptor mockDescriptor = mock(ParcelFileDescriptor.class);
+    FileDescriptor fileDescriptor = new FileDescriptor();
+    when(mockDescriptor.getFileDescriptor()).thenReturn(fileDescriptor);
+    when(mockFileUtils.openRemoteFileDescriptor(any(Context.class), any(Uri.class)))
+        .thenReturn(mockDescriptor);
+    when(mockFileUtils.getLastModified(any(Context.class), any(Uri.class))).thenReturn(-1L);
+    when(mockImageResizer.resizeImageIfNeeded(
+            eq(fileDescriptor), eq((String) null), eq("image_picker.jpg"),
+            eq(WIDTH), eq((Double) null), eq(IMAGE_QUALITY)))
+        .thenReturn("scaledFromDescriptor");
+
+    ImagePickerDelegate delegate = createDelegateWithPendingResultAndMethodCall();
+    delegate.onActivityResult(
+        ImagePickerDelegate.REQUEST_CODE_CHOOSE_IMAGE_FROM_GALLERY, Activity.RESULT_OK, mockIntent);
+
+    verify(mockResult).success("scaledFromDescriptor");
+    verifyNoMoreInteractions(mockResult);
+  }
+
+  @Test
+  public void onActivityResult_WhenCopiedImageHasModificationTime_CachesUnderUri() {
+    when(mockMethodCall.argument("maxWidth")).thenReturn(WIDTH);
+    when(mockFileUtils.getLastModified(any(Context.class), any(Uri.class))).thenReturn(1000L);
+    // The copy at "pathFromUri" does not exist here, so its length reads as 0.
+    when(mockImageResizer.resizeImageIfNeeded(
+            "pathFromUri", mockIntent.getData() + "|0|1000", "image_picker.jpg",
+            WIDTH, null, IMAGE_QUALITY, 0))
+        .thenReturn("scaledFromCopy");
+
+    ImagePickerDelegate delegate = createDelegateWithPendingResultAndMethodCall();
+    delegate.onActivityResult(
+        ImagePickerDelegate.REQUEST_CODE_CHOOSE_IMAGE_FROM_GALLERY, Activity.RESULT_OK, mockIntent);
+
+    verify(mockResult).success("scaledFromCopy");
+    verifyNoMoreInteractions(mockResult);
+  }
+
+  @Test
+  public void onActivityResult_WhenImagePickedFromGallery_ReleasesResultOnceDelivered() {
+    when(mockMethodCall.argument("maxWidth")).thenReturn(WIDTH);
+
+    ImagePickerDelegate delegate = createDelegateWithPendingResultAndMethodCall();
+    delegate.onActivityResult(
+        ImagePickerDelegate.REQUEST_CODE_CHOOSE_IMAGE_FROM_GALLERY, Activity.RESULT_OK, mockIntent);
+
+    verify(mockImageResizer).releaseResizedImage("scaledPath");
+  }
+
+  @Test
+  public void onActivityResult_WhenImagesPickedFromGallery_StreamsEachResizedImage() {
+    when(mockPermissionManager.isPermissionGranted(Manifest.permission.READ_EXTERNAL_STORAGE))
+        .thenReturn(true);
+    Uri firstUri = mock(Uri.class);
+    Uri secondUri = mock(Uri.class);
+    ClipData mockClipData = mock(ClipData.class);
+    when(mockClipData.getItemCount()).thenReturn(2);
+    ClipData.Item firstItem = mock(ClipData.Item.class);
+    ClipData.Item secondItem = mock(ClipData.Item.class);
+    when(firstItem.getUri()).thenReturn(firstUri);
+    when(secondItem.getUri()).thenReturn(secondUri);
+    when(mockClipData.getItemAt(0)).thenReturn(firstItem);
+    when(mockClipData.getItemAt(1)).thenReturn(secondItem);
+    when(mockIntent.getClipData()).thenReturn(mockClipData);
+    when(mockFileUtils.getPathFromUri(any(Context.class), eq(firstUri))).thenReturn("first");
+    when(mockFileUtils.getPathFromUri(any(Context.class), eq(secondUri))).thenReturn("second");
+    when(mockImageResizer.resizeImageIfNeeded("first", WIDTH, null, IMAGE_QUALITY, 0))
+        .thenReturn("scaledFirst");
+    when(mockImageResizer.resizeImageIfNeeded("second", WIDTH, null, IMAGE_QUALITY, 0))
+        .thenThrow(new RuntimeException("decode failed"));
+    Map<String, Object> arguments = new HashMap<>();
+    arguments.put("maxWidth", WIDTH);
+
+    ImagePickerDelegate delegate = createDelegate();
+    delegate.chooseMultiImageFromGallery(arguments, mockEvents);
+    delegate.onActivityResult(
+        ImagePickerDelegate.REQUEST_CODE_CHOOSE_MULTI_IMAGE_FROM_GALLERY,
+        Activity.RESULT_OK,
+        mockIntent);
+
+    verify(mockEvents).success("scaledFirst");
+    verify(mockEvents).error("resize_failed", "decode failed", null);
+    verify(mockEvents).endOfStream();
+    verifyNoMoreInteractions(mockEvents);
+  }
+
+  @Test
+  public void onActivityResult_WhenMultiImageResizeRunsOutOfMemory_EndsStream() {
+    when(mockPermissionManager.isPermissionGranted(Manifest.permission.READ_EXTERNAL_STORAGE))
+        .thenReturn(true);
+    when(mockImageResizer.resizeImageIfNeeded("pathFromUri", null, null, IMAGE_QUALITY, 0))
+        .thenThrow(new OutOfMemoryError("bitmap too large"));
+
+    ImagePickerDelegate delegate = createDelegate();
+    delegate.chooseMultiImageFromGallery(new HashMap<String, Object>(), mockEvents);
+    delegate.onActivityResult(
+        ImagePickerDelegate.REQUEST_CODE_CHOOSE_MULTI_IMAGE_FROM_GALLERY,
+        Activity.RESULT_OK,
+        mockIntent);
+
+    verify(mockEvents).error("resize_failed", "bitmap too large", null);
+    verify(mockEvents).endOfStream();
+    verifyNoMoreInteractions(mockEvents);
+  }
+
+  @Test
+  public void
+      chooseMultiImageFromGallery_WhenCancelledPickIsStillRunning_FinishesWithAlreadyActiveError() {
+    when(mockPermissionManager.isPermissionGranted(Manifest.permission.READ_EXTERNAL_STORAGE))
+        .thenReturn(true);
+    EventChannel.EventSink secondEvents = mock(EventChannel.EventSink.class);
+
+    ImagePickerDelegate delegate = createDelegate();
+    delegate.chooseMultiImageFromGallery(new HashMap<String, Object>(), mockEvents);
+    // The event channel cancels the old stream before it listens to the new one.
+    delegate.cancelMultiImage();
+    delegate.chooseMultiImageFromGallery(new HashMap<String, Object>(), secondEvents);
+
+    verify(secondEvents).error("already_active", "Image picker is already active", null);
+    verify(secondEvents).endOfStream();
+    verifyNoMoreInteractions(secondEvents);
+  }
+
+  @Test
+  public void chooseMultiImageFromGallery_WhenCancelledPickHasFinished_StartsNewPick() {
+    when(mockPermissionManager.isPermissionGranted(Manifest.permission.READ_EXTERNAL_STORAGE))
+        .thenReturn(true);
+    EventChannel.EventSink secondEvents = mock(EventChannel.EventSink.class);
+
+    ImagePickerDelegate delegate = createDelegate();
+    delegate.chooseMultiImageFromGallery(new HashMap<String, Object>(), mockEvents);
+    delegate.cancelMultiImage();
+    delegate.onActivityResult(
+        ImagePickerDelegate.REQUEST_CODE_CHOOSE_MULTI_IMAGE_FROM_GALLERY,
+        Activity.RESULT_OK,
+        mockIntent);
+    delegate.chooseMultiImageFromGallery(new HashMap<String, Object>(), secondEvents);
+
+    verifyZeroInteractions(mockEvents);
+    verifyZeroInteractions(secondEvents);
+  }
+
+  @Test
+  public void chooseMultiImageFromGallery_WhenPendingResultExists_FinishesWithAlreadyActiveError() {
+    ImagePickerDelegate delegate = createDelegateWithPendingResultAndMethodCall();
+
+    delegate.chooseMultiImageFromGallery(new HashMap<String, Object>(), mockEvents);
+
+    verify(mockEvents).error("already_active", "Image picker is already active", null);
+    verify(mockEvents).endOfStream();
+    verifyNoMoreInteractions(mockResult);
+  }
+
   private ImagePickerDelegate createDelegate() {
     return new ImagePickerDelegate(
         mockActivity,
@@ -382,7 +829,11 @@ public class ImagePickerDelegateTest {
         mockPermissionManager,
         mockIntentResolver,
         mockFileUriResolver,
-        mockFileUtils);
+        mockFileUtils,
+        mockVideoTranscoderFactory,
+        backgroundExecutor,
+        videoExecutor,
+        DIRECT_EXECUTOR);
   }
 
   private ImagePickerDelegate createDelegateWithPendingResultAndMethodCall() {
@@ -396,7 +847,19 @@ public class ImagePickerDelegateTest {
         mockPermissionManager,
         mockIntentResolver,
         mockFileUriResolver,
-        mockFileUtils);
+        mockFileUtils,
+        mockVideoTranscoderFactory,
+        backgroundExecutor,
+        videoExecutor,
+        DIRECT_EXECUTOR);
+  }
+
+  private static Map<String, Object> lostVideo(String path) {
+    Map<String, Object> resultMap = new HashMap<>();
+    resultMap.put(ImagePickerCache.MAP_KEY_PATH, path);
+    resultMap.put(ImagePickerCache.MAP_KEY_TYPE, "video");
+    resultMap.put(ImagePickerCache.MAP_KEY_MAX_VIDEO_BITRATE, VIDEO_BITRATE);
+    return resultMap;
   }
 
   private void verifyFinishedWithAlreadyActiveError() {
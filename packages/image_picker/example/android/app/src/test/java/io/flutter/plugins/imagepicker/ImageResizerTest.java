@@ -0,0 +1,27 @@
+package io.flutter.plugins.imagepicker;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class ImageResizerTest {
+
+  @Test
+  public void calculateInSampleSize_PicksLargestPowerOfTwoThatCoversTarget() {
+    // 48 MP photo down to 1024 px wide.
+    assertThat(ImageResizer.calculateInSampleSize(8000, 6000, 1024, 768), equalTo(4));
+    assertThat(ImageResizer.calculateInSampleSize(4000, 3000, 500, 375), equalTo(8));
+  }
+
+  @Test
+  public void calculateInSampleSize_IsLimitedByTheTighterDimension() {
+    assertThat(ImageResizer.calculateInSampleSize(4000, 1000, 500, 500), equalTo(2));
+  }
+
+  @Test
+  public void calculateInSampleSize_WhenNotDownscaling_ReturnsOne() {
+    assertThat(ImageResizer.calculateInSampleSize(100, 100, 100, 100), equalTo(1));
+    assertThat(ImageResizer.calculateInSampleSize(100, 100, 200, 200), equalTo(1));
+  }
+}
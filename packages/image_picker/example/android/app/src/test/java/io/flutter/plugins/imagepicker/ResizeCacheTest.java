@@ -0,0 +1,143 @@
+package io.flutter.plugins.imagepicker;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNot.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResizeCacheTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void key_ChangesWithSourceAndParameters() throws IOException {
+    File source = folder.newFile("image.jpg");
+    write(source, 10);
+    String key = ResizeCache.key(source, 100.0, null, 90, 0);
+
+    assertThat(ResizeCache.key(source, 100.0, null, 90, 0), equalTo(key));
+    assertThat(ResizeCache.key(source, 200.0, null, 90, 0), not(equalTo(key)));
+    assertThat(ResizeCache.key(source, 100.0, null, 80, 0), not(equalTo(key)));
+    assertThat(ResizeCache.key(source, 100.0, null, 90, 15), not(equalTo(key)));
+
+    write(source, 20);
+    assertThat(ResizeCache.key(source, 100.0, null, 90, 0), not(equalTo(key)));
+  }
+
+  @Test
+  public void get_ReturnsStoredEntry() throws IOException {
+    ResizeCache cache = new ResizeCache(new File(folder.getRoot(), "cache"), 1000);
+    assertNull(cache.get("abc", "image.jpg"));
+
+    File entry = cache.fileFor("abc", "image.jpg");
+    write(entry, 10);
+
+    assertThat(cache.get("abc", "image.jpg"), equalTo(entry));
+  }
+
+  @Test
+  public void get_HoldsEntryUntilReleased() throws IOException {
+    ResizeCache cache = new ResizeCache(new File(folder.getRoot(), "cache"), 50);
+    File entry = cache.fileFor("a", "image.jpg");
+    write(entry, 100);
+
+    File cached = cache.get("a", "image.jpg");
+    cache.trimToSize();
+    assertTrue(entry.exists());
+
+    cache.release(cached);
+    cache.trimToSize();
+    assertFalse(entry.exists());
+  }
+
+  @Test
+  public void trimToSize_DeletesLeastRecentlyUsedEntries() throws IOException {
+    ResizeCache cache = new ResizeCache(new File(folder.getRoot(), "cache"), 250);
+    File first = cache.fileFor("a", "image.jpg");
+    File second = cache.fileFor("b", "image.jpg");
+    File third = cache.fileFor("c", "image.jpg");
+    write(first, 100);
+    write(second, 100);
+    write(third, 100);
+    long now = System.currentTimeMillis();
+    first.setLastModified(now - 30000);
+    second.setLastModified(now - 20000);
+    third.setLastModified(now - 10000);
+    // Using the oldest entry makes the second one the least recently used.
+    cache.get("a", "image.jpg");
+
+    cache.trimToSize();
+
+    assertTrue(first.exists());
+    assertFalse(second.exists());
+    assertTrue(third.exists());
+  }
+
+  @Test
+  public void trimToSize_KeepsHeldEntryOverBudget() throws IOException {
+    ResizeCache cache = new ResizeCache(new File(folder.getRoot(), "cache"), 50);
+    File entry = cache.fileFor("a", "image.jpg");
+    cache.hold(entry);
+    write(entry, 100);
+    entry.setLastModified(System.currentTimeMillis() - 60000);
+
+    cache.trimToSize();
+
+    assertTrue(entry.exists());
+  }
+
+  @Test
+  public void trimToSize_KeepsEntriesUntilEveryHoldIsReleased() throws IOException {
+    ResizeCache cache = new ResizeCache(new File(folder.getRoot(), "cache"), 150);
+    File delivered = cache.fileFor("a", "image.jpg");
+    File undelivered = cache.fileFor("b", "image.jpg");
+    cache.hold(delivered);
+    cache.hold(undelivered);
+    // Two resizes of the same image share an entry.
+    cache.hold(undelivered);
+    write(delivered, 100);
+    write(undelivered, 100);
+    long now = System.currentTimeMillis();
+    delivered.setLastModified(now - 60000);
+    undelivered.setLastModified(now - 120000);
+
+    cache.release(delivered);
+    cache.release(undelivered);
+    cache.trimToSize();
+
+    assertFalse(delivered.exists());
+    assertTrue(undelivered.exists());
+  }
+
+  @Test
+  public void trimToSize_DeletesAbandonedTemporaryFiles() throws IOException {
+    ResizeCache cache = new ResizeCache(new File(folder.getRoot(), "cache"), 1000);
+    File abandoned = cache.fileFor("a", "image.jpg" + ResizeCache.TEMP_SUFFIX);
+    File writing = cache.fileFor("b", "image.jpg" + ResizeCache.TEMP_SUFFIX);
+    write(abandoned, 10);
+    write(writing, 10);
+    abandoned.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000);
+
+    cache.trimToSize();
+
+    assertFalse(abandoned.exists());
+    assertTrue(writing.exists());
+  }
+
+  private static void write(File file, int length) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(new byte[length]);
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package io.flutter.plugins.imagepicker.benchmark;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Runs a codec task on the JVM and reports its time per megapixel, the memory it allocates and
+ * the size of what it writes, so codec changes can be compared before and after.
+ *
+ * <p>Run the benchmarks with {@code ./gradlew testDebugUnitTest -Pbenchmarks --tests
+ * '*BenchmarkTest'} from {@code example/android}; without {@code -Pbenchmarks} the unit test
+ * task leaves them out. Each prints one line per task. Allocation and output size hardly vary
+ * between runs, so tests check them against budgets with {@link #assertWithinBudget}, set about
+ * half again above what the code measured when they were last updated. Time depends on the
+ * machine and is only reported.
+ */
+public final class Benchmark {
+  private static final int WARMUP_ROUNDS = 3;
+
+  /** A task to measure. Returns the number of bytes it wrote. */
+  public interface Task {
+    long run() throws Exception;
+  }
+
+  /** What one benchmark measured, per round. */
+  public static final class Result {
+    public final String name;
+    public final double millisPerMegapixel;
+    /** Bytes allocated by the measuring thread, or -1 where the JVM cannot tell. */
+    public final long allocatedBytes;
+    /** How far the heap grew above what was live before the rounds, at its highest. */
+    public final long peakHeapBytes;
+
+    public final long outputBytes;
+
+    Result(
+        String name,
+        double millisPerMegapixel,
+        long allocatedBytes,
+        long peakHeapBytes,
+        long outputBytes) {
+      this.name = name;
+      this.millisPerMegapixel = millisPerMegapixel;
+      this.allocatedBytes = allocatedBytes;
+      this.peakHeapBytes = peakHeapBytes;
+      this.outputBytes = outputBytes;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%s: %.2f ms/MP, %d KB allocated, %d KB peak heap, %d bytes out",
+          name, millisPerMegapixel, allocatedBytes / 1024, peakHeapBytes / 1024, outputBytes);
+    }
+  }
+
+  private Benchmark() {}
+
+  /**
+   * Warms the task up, then measures {@code rounds} runs of it on the calling thread.
+   *
+   * @param megapixels image data one run processes, to normalize its time by
+   */
+  public static Result run(String name, double megapixels, int rounds, Task task)
+      throws Exception {
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      task.run();
+    }
+
+    System.gc();
+    long liveHeap = usedHeap();
+    resetPeakHeap();
+    long allocatedBefore = allocatedBytes();
+    long outputBytes = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      outputBytes = task.run();
+    }
+    long nanos = System.nanoTime() - start;
+    long allocatedAfter = allocatedBytes();
+
+    Result result =
+        new Result(
+            name,
+            nanos / 1e6 / rounds / megapixels,
+            allocatedBefore < 0 ? -1 : (allocatedAfter - allocatedBefore) / rounds,
+            Math.max(0, peakHeap() - liveHeap),
+            outputBytes);
+    System.out.println(result);
+    return result;
+  }
+
+  /** Fails if a result allocated or wrote more than allowed. */
+  public static void assertWithinBudget(
+      Result result, long maxAllocatedBytes, long maxOutputBytes) {
+    assertTrue(
+        result.name + " allocated " + result.allocatedBytes + " bytes, budget " + maxAllocatedBytes,
+        result.allocatedBytes <= maxAllocatedBytes);
+    assertTrue(
+        result.name + " wrote " + result.outputBytes + " bytes, budget " + maxOutputBytes,
+        result.outputBytes <= maxOutputBytes);
+  }
+
+  private static long allocatedBytes() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    return ((com.sun.management.ThreadMXBean) threads)
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static long usedHeap() {
+    long used = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        used += pool.getUsage().getUsed();
+      }
+    }
+    return used;
+  }
+
+  private static void resetPeakHeap() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  // Pools peak at different times, so their sum overstates the peak somewhat.
+  private static long peakHeap() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+}
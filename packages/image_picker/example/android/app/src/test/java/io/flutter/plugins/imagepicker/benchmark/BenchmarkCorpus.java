@@ -0,0 +1,338 @@
+package io.flutter.plugins.imagepicker.benchmark;
+
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+import android.graphics.Bitmap;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * The fixed set of images the benchmarks run on: a camera photo as a JPEG with Exif data, a
+ * screenshot as a PNG and a short animation as a GIF.
+ *
+ * <p>The images are generated from fixed seeds rather than checked in, and encoded with the JDK's
+ * codecs. Their pixels are read back the same way, standing in for what {@code BitmapFactory}
+ * hands the plugin on a device.
+ */
+public final class BenchmarkCorpus {
+  public static final int PHOTO_WIDTH = 1024;
+  public static final int PHOTO_HEIGHT = 768;
+  public static final int SCREENSHOT_WIDTH = 720;
+  public static final int SCREENSHOT_HEIGHT = 1280;
+  public static final int ANIMATION_WIDTH = 320;
+  public static final int ANIMATION_HEIGHT = 240;
+  public static final int ANIMATION_FRAMES = 24;
+  // In hundredths of a second, as GIFs store it: 25 frames per second.
+  private static final int ANIMATION_DELAY = 4;
+  // Stands in for the thumbnail a camera stores in its Exif segment.
+  private static final int EXIF_THUMBNAIL_BYTES = 16 * 1024;
+
+  private static byte[] photoJpeg;
+  private static byte[] screenshotPng;
+  private static byte[] animationGif;
+
+  private BenchmarkCorpus() {}
+
+  /** A photo with smooth gradients, fine noise and some hard edges, with an Exif segment. */
+  public static synchronized byte[] photoJpeg() throws IOException {
+    if (photoJpeg == null) {
+      byte[] jpeg = encode(image(photo(), PHOTO_WIDTH, PHOTO_HEIGHT), "jpg");
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      // The Exif segment goes right after the start-of-image marker, as cameras write it.
+      out.write(jpeg, 0, 2);
+      out.write(exifSegment(PHOTO_WIDTH, PHOTO_HEIGHT));
+      out.write(jpeg, 2, jpeg.length - 2);
+      photoJpeg = out.toByteArray();
+    }
+    return photoJpeg;
+  }
+
+  /** A screenshot: flat areas, a few colors and rows of text-like detail. */
+  public static synchronized byte[] screenshotPng() throws IOException {
+    if (screenshotPng == null) {
+      screenshotPng =
+          encode(image(screenshot(), SCREENSHOT_WIDTH, SCREENSHOT_HEIGHT), "png");
+    }
+    return screenshotPng;
+  }
+
+  /** An animation of a sprite moving over a still background, 25 frames per second. */
+  public static synchronized byte[] animationGif() throws IOException {
+    if (animationGif == null) {
+      animationGif = encodeAnimation();
+    }
+    return animationGif;
+  }
+
+  /** The photo's pixels as ARGB, as decoded from {@link #photoJpeg}. */
+  public static int[] photoPixels() throws IOException {
+    return pixels(ImageIO.read(new ByteArrayInputStream(photoJpeg())));
+  }
+
+  /** The screenshot's pixels as ARGB, as decoded from {@link #screenshotPng}. */
+  public static int[] screenshotPixels() throws IOException {
+    return pixels(ImageIO.read(new ByteArrayInputStream(screenshotPng())));
+  }
+
+  /** The animation's frames as ARGB, as decoded from {@link #animationGif}. */
+  public static int[][] animationFrames() throws IOException {
+    ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+    ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(animationGif()));
+    try {
+      reader.setInput(in);
+      int[][] frames = new int[ANIMATION_FRAMES][];
+      for (int i = 0; i < ANIMATION_FRAMES; i++) {
+        // Every frame covers the whole canvas, so it needs no compositing.
+        frames[i] = pixels(reader.read(i));
+      }
+      return frames;
+    } finally {
+      reader.dispose();
+      in.close();
+    }
+  }
+
+  /** Interleaves ARGB pixels into the BGR bytes the GIF quantizer takes. */
+  public static byte[] toBgr(int[] argb) {
+    byte[] bgr = new byte[argb.length * 3];
+    for (int i = 0, k = 0; i < argb.length; i++) {
+      bgr[k++] = (byte) argb[i];
+      bgr[k++] = (byte) (argb[i] >> 8);
+      bgr[k++] = (byte) (argb[i] >> 16);
+    }
+    return bgr;
+  }
+
+  /**
+   * Returns a {@link Bitmap} backed by the given pixels. Reading its pixels reads the array, and
+   * setting them writes it, so codecs can run against it off a device.
+   */
+  public static Bitmap bitmap(final int[] argb, final int width, final int height) {
+    Answer<Object> pixels =
+        new Answer<Object>() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            Object[] args = invocation.getArguments();
+            switch (invocation.getMethod().getName()) {
+              case "getWidth":
+                return width;
+              case "getHeight":
+                return height;
+              case "isMutable":
+                return true;
+              case "hasAlpha":
+                return false;
+              case "getPixels":
+                copyRect(argb, width, (int[]) args[0], args, false);
+                return null;
+              case "setPixels":
+                copyRect(argb, width, (int[]) args[0], args, true);
+                return null;
+              default:
+                return RETURNS_DEFAULTS.answer(invocation);
+            }
+          }
+        };
+    // Stub only, so the mock does not keep every call, and the pixels passed, for verification.
+    return mock(Bitmap.class, withSettings().stubOnly().defaultAnswer(pixels));
+  }
+
+  // Arguments as for Bitmap.getPixels: pixels, offset, stride, x, y, width, height.
+  private static void copyRect(
+      int[] bitmap, int bitmapWidth, int[] pixels, Object[] args, boolean toBitmap) {
+    int offset = (Integer) args[1];
+    int stride = (Integer) args[2];
+    int x = (Integer) args[3];
+    int y = (Integer) args[4];
+    int width = (Integer) args[5];
+    int height = (Integer) args[6];
+    for (int row = 0; row < height; row++) {
+      int bitmapIndex = (y + row) * bitmapWidth + x;
+      int pixelsIndex = offset + row * stride;
+      if (toBitmap) {
+        System.arraycopy(pixels, pixelsIndex, bitmap, bitmapIndex, width);
+      } else {
+        System.arraycopy(bitmap, bitmapIndex, pixels, pixelsIndex, width);
+      }
+    }
+  }
+
+  private static int[] photo() {
+    int[] argb = new int[PHOTO_WIDTH * PHOTO_HEIGHT];
+    Random random = new Random(42);
+    for (int y = 0; y < PHOTO_HEIGHT; y++) {
+      for (int x = 0; x < PHOTO_WIDTH; x++) {
+        int r = x * 255 / PHOTO_WIDTH;
+        int g = y * 255 / PHOTO_HEIGHT;
+        int b = 96 + (int) (64 * Math.sin((x + y) / 40.0));
+        // A bright disc makes for hard edges, noise for sensor grain.
+        int dx = x - PHOTO_WIDTH / 3;
+        int dy = y - PHOTO_HEIGHT / 2;
+        if (dx * dx + dy * dy < 150 * 150) {
+          r = 240;
+          g = 220;
+          b = 40;
+        }
+        int noise = random.nextInt(17) - 8;
+        argb[y * PHOTO_WIDTH + x] = rgb(r + noise, g + noise, b + noise);
+      }
+    }
+    return argb;
+  }
+
+  private static int[] screenshot() {
+    int[] argb = new int[SCREENSHOT_WIDTH * SCREENSHOT_HEIGHT];
+    Random random = new Random(7);
+    for (int y = 0; y < SCREENSHOT_HEIGHT; y++) {
+      for (int x = 0; x < SCREENSHOT_WIDTH; x++) {
+        int color;
+        if (y < 160) {
+          color = rgb(33, 150, 243); // app bar
+        } else if (y % 96 < 4) {
+          color = rgb(224, 224, 224); // list dividers
+        } else {
+          color = rgb(255, 255, 255);
+        }
+        argb[y * SCREENSHOT_WIDTH + x] = color;
+      }
+    }
+    // Lines of "text": short dark runs in the list rows.
+    for (int row = 200; row < SCREENSHOT_HEIGHT; row += 96) {
+      for (int line = 0; line < 2; line++) {
+        int top = row + 20 + line * 28;
+        for (int x = 32; x < SCREENSHOT_WIDTH - 32; x += 4 + random.nextInt(8)) {
+          int glyphWidth = 2 + random.nextInt(6);
+          for (int y = top; y < top + 14 && y < SCREENSHOT_HEIGHT; y++) {
+            for (int i = x; i < x + glyphWidth && i < SCREENSHOT_WIDTH; i++) {
+              argb[y * SCREENSHOT_WIDTH + i] = line == 0 ? rgb(33, 33, 33) : rgb(117, 117, 117);
+            }
+          }
+          x += glyphWidth;
+        }
+      }
+    }
+    return argb;
+  }
+
+  private static int[] animationFrame(int frame) {
+    int[] argb = new int[ANIMATION_WIDTH * ANIMATION_HEIGHT];
+    int spriteX = 20 + frame * (ANIMATION_WIDTH - 80) / ANIMATION_FRAMES;
+    int spriteY = ANIMATION_HEIGHT / 2 - 20 + (int) (30 * Math.sin(frame / 3.0));
+    for (int y = 0; y < ANIMATION_HEIGHT; y++) {
+      for (int x = 0; x < ANIMATION_WIDTH; x++) {
+        boolean sprite = x >= spriteX && x < spriteX + 40 && y >= spriteY && y < spriteY + 40;
+        argb[y * ANIMATION_WIDTH + x] =
+            sprite
+                ? rgb(220, 40 + 8 * frame, 60)
+                : rgb(x * 255 / ANIMATION_WIDTH, 120, y * 255 / ANIMATION_HEIGHT);
+      }
+    }
+    return argb;
+  }
+
+  private static byte[] encodeAnimation() throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ImageOutputStream out = ImageIO.createImageOutputStream(bytes);
+    try {
+      writer.setOutput(out);
+      writer.prepareWriteSequence(null);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      for (int i = 0; i < ANIMATION_FRAMES; i++) {
+        BufferedImage frame = image(animationFrame(i), ANIMATION_WIDTH, ANIMATION_HEIGHT);
+        IIOMetadata metadata =
+            writer.getDefaultImageMetadata(
+                ImageTypeSpecifier.createFromRenderedImage(frame), param);
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+        IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(ANIMATION_DELAY));
+        control.setAttribute("transparentColorIndex", "0");
+        root.appendChild(control);
+        metadata.setFromTree(format, root);
+        writer.writeToSequence(new IIOImage(frame, null, metadata), param);
+      }
+      writer.endWriteSequence();
+    } finally {
+      writer.dispose();
+      out.close();
+    }
+    return bytes.toByteArray();
+  }
+
+  /** An Exif segment with the image size, an orientation and a thumbnail-sized blob. */
+  private static byte[] exifSegment(int width, int height) {
+    int ifd0 = 8;
+    int exifIfd = ifd0 + 2 + 4 * 12 + 4;
+    int thumbnail = exifIfd + 2 + 2 * 12 + 4;
+    ByteBuffer tiff = ByteBuffer.allocate(thumbnail + EXIF_THUMBNAIL_BYTES);
+    tiff.put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(ifd0);
+    tiff.putShort((short) 4);
+    tiff.putShort((short) 0x0100).putShort((short) 4).putInt(1).putInt(width);
+    tiff.putShort((short) 0x0101).putShort((short) 4).putInt(1).putInt(height);
+    tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1);
+    tiff.putShort((short) 6).putShort((short) 0);
+    tiff.putShort((short) 0x8769).putShort((short) 4).putInt(1).putInt(exifIfd);
+    tiff.putInt(0);
+    tiff.putShort((short) 2);
+    tiff.putShort((short) 0xA002).putShort((short) 4).putInt(1).putInt(width);
+    tiff.putShort((short) 0xA003).putShort((short) 4).putInt(1).putInt(height);
+    tiff.putInt(0);
+    byte[] blob = new byte[EXIF_THUMBNAIL_BYTES];
+    new Random(3).nextBytes(blob);
+    tiff.put(blob);
+
+    int length = 2 + 6 + tiff.capacity();
+    ByteBuffer segment = ByteBuffer.allocate(2 + length);
+    segment.put((byte) 0xFF).put((byte) 0xE1).putShort((short) length);
+    segment.put(new byte[] {'E', 'x', 'i', 'f', 0, 0}).put(tiff.array());
+    return segment.array();
+  }
+
+  private static BufferedImage image(int[] argb, int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    image.setRGB(0, 0, width, height, argb, 0, width);
+    return image;
+  }
+
+  private static int[] pixels(BufferedImage image) {
+    return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+  }
+
+  private static byte[] encode(BufferedImage image, String format) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    if (!ImageIO.write(image, format, out)) {
+      throw new IOException("No " + format + " writer");
+    }
+    return out.toByteArray();
+  }
+
+  private static int rgb(int r, int g, int b) {
+    return 0xFF000000 | clamp(r) << 16 | clamp(g) << 8 | clamp(b);
+  }
+
+  private static int clamp(int value) {
+    return Math.max(0, Math.min(255, value));
+  }
+}
@@ -0,0 +1,67 @@
+package io.flutter.plugins.imagepicker.gif_compression;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FramePlanTest {
+
+  @Test
+  public void create_WithoutLimits_KeepsEveryFrameAndDelay() {
+    FramePlan plan = FramePlan.create(new int[] {40, 60, 100}, 0, 0);
+
+    assertThat(plan.size(), equalTo(3));
+    assertThat(plan.delayAt(0), equalTo(40));
+    assertThat(plan.delayAt(1), equalTo(60));
+    assertThat(plan.delayAt(2), equalTo(100));
+  }
+
+  @Test
+  public void create_WithMaxFrameRate_FoldsDroppedDelaysIntoKeptFrames() {
+    // 50 fps source, 10 fps target.
+    int[] delays = new int[50];
+    for (int i = 0; i < delays.length; i++) {
+      delays[i] = 20;
+    }
+
+    FramePlan plan = FramePlan.create(delays, 10, 0);
+
+    assertThat(plan.size(), equalTo(10));
+    for (int n = 0; n < plan.size(); n++) {
+      assertThat(plan.frameAt(n), equalTo(n * 5));
+      assertThat(plan.delayAt(n), equalTo(100));
+    }
+  }
+
+  @Test
+  public void create_WithMaxFrames_KeepsDurationAndStaysWithinBudget() {
+    int[] delays = new int[97];
+    int duration = 0;
+    for (int i = 0; i < delays.length; i++) {
+      delays[i] = 30 + (i % 4) * 10;
+      duration += delays[i];
+    }
+
+    FramePlan plan = FramePlan.create(delays, 0, 24);
+
+    assertTrue(plan.size() <= 24);
+    assertThat(plan.frameAt(0), equalTo(0));
+    int total = 0;
+    for (int n = 0; n < plan.size(); n++) {
+      total += plan.delayAt(n);
+    }
+    assertThat(total, equalTo(duration));
+  }
+
+  @Test
+  public void create_TreatsTinyDelaysAsBrowsersDo() {
+    FramePlan plan = FramePlan.create(new int[] {0, 10, 0, 0}, 5, 0);
+
+    assertThat(plan.size(), equalTo(2));
+    assertThat(plan.frameAt(1), equalTo(2));
+    assertThat(plan.delayAt(0), equalTo(200));
+    assertThat(plan.delayAt(1), equalTo(200));
+  }
+}
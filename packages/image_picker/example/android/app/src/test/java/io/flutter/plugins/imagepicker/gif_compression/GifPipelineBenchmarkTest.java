@@ -0,0 +1,74 @@
+package io.flutter.plugins.imagepicker.gif_compression;
+
+import static io.flutter.plugins.imagepicker.benchmark.Benchmark.assertWithinBudget;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.ANIMATION_FRAMES;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.ANIMATION_HEIGHT;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.ANIMATION_WIDTH;
+
+import android.graphics.Bitmap;
+import io.flutter.plugins.imagepicker.benchmark.Benchmark;
+import io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus;
+import io.flutter.plugins.imagepicker.gif_compression.gif_decoder.GifDecoder;
+import io.flutter.plugins.imagepicker.gif_compression.gif_encoder.AnimatedGifEncoder;
+import java.io.ByteArrayOutputStream;
+import org.junit.Test;
+
+/**
+ * Measures what ImageResizer does to a picked GIF: the steps of {@link GifCompressionAsync}, at the
+ * frame rate ImageResizer asks for. Frames are not scaled, as Bitmap scaling is native code that
+ * does not run off a device, and quantizing runs on the calling thread so all work is measured.
+ */
+public class GifPipelineBenchmarkTest {
+  private static final int ROUNDS = 5;
+  // ImageResizer's MAX_GIF_FRAME_RATE.
+  private static final int MAX_FRAME_RATE = 15;
+  private static final int PALETTE_SAMPLE_FRAMES = 8;
+
+  @Test
+  public void compress_Animation() throws Exception {
+    final byte[] gif = BenchmarkCorpus.animationGif();
+    final Bitmap frame =
+        BenchmarkCorpus.bitmap(
+            new int[ANIMATION_WIDTH * ANIMATION_HEIGHT], ANIMATION_WIDTH, ANIMATION_HEIGHT);
+
+    Benchmark.Result result =
+        Benchmark.run(
+            "GIF resize pipeline",
+            ANIMATION_WIDTH * ANIMATION_HEIGHT * ANIMATION_FRAMES / 1e6,
+            ROUNDS,
+            new Benchmark.Task() {
+              @Override
+              public long run() {
+                GifDecoder decoder = new GifDecoder();
+                decoder.read(gif);
+                int[] delays = new int[decoder.getFrameCount()];
+                for (int i = 0; i < delays.length; i++) {
+                  delays[i] = decoder.getDelay(i);
+                }
+                FramePlan plan = FramePlan.create(delays, MAX_FRAME_RATE, 0);
+
+                AnimatedGifEncoder encoder = new AnimatedGifEncoder();
+                if (!decoder.hasLocalColorTables()) {
+                  encoder.setGlobalPalette(true);
+                  int interval = Math.max(1, plan.size() / PALETTE_SAMPLE_FRAMES);
+                  for (int n = 0; n < plan.size(); n += interval) {
+                    encoder.addPaletteSample(decoder.decodeFrame(plan.frameAt(n), frame));
+                  }
+                }
+                encoder.setFrameDifferencing(true);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                encoder.start(out);
+                encoder.setRepeat(0);
+                for (int n = 0; n < plan.size(); n++) {
+                  encoder.setDelay(plan.delayAt(n));
+                  encoder.addFrame(decoder.decodeFrame(plan.frameAt(n), frame));
+                }
+                encoder.finish();
+                decoder.clear();
+                return out.size();
+              }
+            });
+
+    assertWithinBudget(result, 5 * 1024 * 1024, 38 * 1024);
+  }
+}
@@ -0,0 +1,46 @@
+package io.flutter.plugins.imagepicker.gif_compression.gif_decoder;
+
+import static io.flutter.plugins.imagepicker.benchmark.Benchmark.assertWithinBudget;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.ANIMATION_FRAMES;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.ANIMATION_HEIGHT;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.ANIMATION_WIDTH;
+import static org.junit.Assert.assertSame;
+
+import android.graphics.Bitmap;
+import io.flutter.plugins.imagepicker.benchmark.Benchmark;
+import io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus;
+import org.junit.Test;
+
+/** Measures the GIF decoder on the benchmark corpus. */
+public class GifDecoderBenchmarkTest {
+  private static final int ROUNDS = 5;
+  private static final int FRAME_BYTES = ANIMATION_WIDTH * ANIMATION_HEIGHT * 4;
+
+  @Test
+  public void decodeFrame_Animation() throws Exception {
+    final byte[] gif = BenchmarkCorpus.animationGif();
+    final int[] canvas = new int[ANIMATION_WIDTH * ANIMATION_HEIGHT];
+    final Bitmap target = BenchmarkCorpus.bitmap(canvas, ANIMATION_WIDTH, ANIMATION_HEIGHT);
+
+    Benchmark.Result result =
+        Benchmark.run(
+            "GifDecoder animation",
+            ANIMATION_WIDTH * ANIMATION_HEIGHT * ANIMATION_FRAMES / 1e6,
+            ROUNDS,
+            new Benchmark.Task() {
+              @Override
+              public long run() {
+                GifDecoder decoder = new GifDecoder();
+                decoder.read(gif);
+                int frameCount = decoder.getFrameCount();
+                for (int i = 0; i < frameCount; i++) {
+                  assertSame(target, decoder.decodeFrame(i, target));
+                }
+                decoder.clear();
+                return (long) frameCount * FRAME_BYTES;
+              }
+            });
+
+    assertWithinBudget(result, 1024 * 1024, (long) ANIMATION_FRAMES * FRAME_BYTES);
+  }
+}
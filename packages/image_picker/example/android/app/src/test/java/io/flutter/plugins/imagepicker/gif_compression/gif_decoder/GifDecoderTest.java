@@ -0,0 +1,94 @@
+package io.flutter.plugins.imagepicker.gif_compression.gif_decoder;
+
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.ANIMATION_FRAMES;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.ANIMATION_HEIGHT;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.ANIMATION_WIDTH;
+import static org.junit.Assert.assertArrayEquals;
+
+import android.graphics.Bitmap;
+import io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus;
+import io.flutter.plugins.imagepicker.gif_compression.gif_encoder.AnimatedGifEncoder;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class GifDecoderTest {
+  private static final int WIDTH = 8;
+  private static final int HEIGHT = 8;
+  private static final int DISPOSAL_NONE = 1;
+  private static final int DISPOSAL_PREVIOUS = 3;
+
+  @Test
+  public void decodeFrame_MatchesReferenceDecoder() throws Exception {
+    int[][] expected = BenchmarkCorpus.animationFrames();
+    int[] canvas = new int[ANIMATION_WIDTH * ANIMATION_HEIGHT];
+    Bitmap target = BenchmarkCorpus.bitmap(canvas, ANIMATION_WIDTH, ANIMATION_HEIGHT);
+    GifDecoder decoder = new GifDecoder();
+    decoder.read(BenchmarkCorpus.animationGif());
+
+    for (int i = 0; i < ANIMATION_FRAMES; i++) {
+      decoder.decodeFrame(i, target);
+      assertArrayEquals(opaque(expected[i]), opaque(canvas));
+    }
+  }
+
+  @Test
+  public void decodeFrame_AfterFullFrameDisposedToPrevious_RestoresEarlierFrame() {
+    // The second frame paints the whole canvas but is disposed to previous, so the third frame is
+    // drawn over the first one.
+    byte[] gif =
+        encode(
+            new int[][] {solid(WIDTH, HEIGHT, 0xFFFF0000), solid(WIDTH, HEIGHT, 0xFF00FF00)},
+            new int[] {DISPOSAL_NONE, DISPOSAL_PREVIOUS},
+            solid(WIDTH / 2, HEIGHT / 2, 0xFF0000FF));
+
+    int[] sequential = new int[WIDTH * HEIGHT];
+    Bitmap sequentialTarget = BenchmarkCorpus.bitmap(sequential, WIDTH, HEIGHT);
+    GifDecoder decoder = new GifDecoder();
+    decoder.read(gif);
+    decoder.decodeFrame(0, sequentialTarget);
+    int[] expected = sequential.clone();
+    decoder.decodeFrame(1, sequentialTarget);
+    decoder.decodeFrame(2, sequentialTarget);
+    for (int y = 0; y < HEIGHT / 2; y++) {
+      Arrays.fill(expected, y * WIDTH, y * WIDTH + WIDTH / 2, sequential[0]);
+    }
+
+    int[] randomAccess = new int[WIDTH * HEIGHT];
+    GifDecoder randomAccessDecoder = new GifDecoder();
+    randomAccessDecoder.read(gif);
+    randomAccessDecoder.decodeFrame(2, BenchmarkCorpus.bitmap(randomAccess, WIDTH, HEIGHT));
+
+    assertArrayEquals(expected, sequential);
+    assertArrayEquals(expected, randomAccess);
+  }
+
+  /** Encodes full canvas frames with the given disposal codes, followed by a smaller last frame. */
+  private static byte[] encode(int[][] frames, int[] disposals, int[] lastFrame) {
+    AnimatedGifEncoder encoder = new AnimatedGifEncoder();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    encoder.start(out);
+    for (int i = 0; i < frames.length; i++) {
+      encoder.setDispose(disposals[i]);
+      encoder.addFrame(BenchmarkCorpus.bitmap(frames[i], WIDTH, HEIGHT));
+    }
+    encoder.setDispose(DISPOSAL_NONE);
+    encoder.addFrame(BenchmarkCorpus.bitmap(lastFrame, WIDTH / 2, HEIGHT / 2));
+    encoder.finish();
+    return out.toByteArray();
+  }
+
+  private static int[] opaque(int[] argb) {
+    int[] rgb = new int[argb.length];
+    for (int i = 0; i < argb.length; i++) {
+      rgb[i] = argb[i] | 0xFF000000;
+    }
+    return rgb;
+  }
+
+  private static int[] solid(int width, int height, int argb) {
+    int[] pixels = new int[width * height];
+    Arrays.fill(pixels, argb);
+    return pixels;
+  }
+}
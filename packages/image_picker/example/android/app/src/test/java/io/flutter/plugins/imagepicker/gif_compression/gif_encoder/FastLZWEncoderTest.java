@@ -0,0 +1,90 @@
+package io.flutter.plugins.imagepicker.gif_compression.gif_encoder;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+
+public class FastLZWEncoderTest {
+  private static final int WIDTH = 320;
+  private static final int HEIGHT = 240;
+  private static final int COLOR_DEPTH = 8;
+
+  @Test
+  public void encode_MatchesClassicCodeStreamOnNoise() throws IOException {
+    // Noise overflows the 4096 entry table, so this also covers the clear code path.
+    byte[] pixels = new byte[WIDTH * HEIGHT];
+    new Random(42).nextBytes(pixels);
+
+    assertSameCodeStream(WIDTH, HEIGHT, pixels);
+  }
+
+  @Test
+  public void encode_MatchesClassicCodeStreamOnGradient() throws IOException {
+    assertSameCodeStream(WIDTH, HEIGHT, gradient());
+  }
+
+  @Test
+  public void encode_MatchesClassicCodeStreamOnTinyImages() throws IOException {
+    assertSameCodeStream(1, 1, new byte[] {7});
+    assertSameCodeStream(3, 1, new byte[] {1, 1, 1});
+    assertSameCodeStream(WIDTH, HEIGHT, new byte[WIDTH * HEIGHT]);
+  }
+
+  @Test
+  public void encode_UsesFullSubBlocks() throws IOException {
+    byte[] pixels = new byte[WIDTH * HEIGHT];
+    new Random(1).nextBytes(pixels);
+
+    byte[] encoded = encode(new FastLZWEncoder(WIDTH, HEIGHT, pixels, COLOR_DEPTH));
+
+    assertThat(encoded[1] & 0xff, equalTo(255));
+  }
+
+  private void assertSameCodeStream(int width, int height, byte[] pixels) throws IOException {
+    byte[] classic = encode(new LZWEncoder(width, height, pixels, COLOR_DEPTH));
+    byte[] fast = encode(new FastLZWEncoder(width, height, pixels, COLOR_DEPTH));
+
+    // The encoders split data into differently sized sub-blocks, so compare the bare codes.
+    assertThat(fast[0], equalTo(classic[0]));
+    assertArrayEquals(unpackSubBlocks(classic), unpackSubBlocks(fast));
+  }
+
+  private static byte[] encode(LZWEncoder encoder) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    encoder.encode(out);
+    return out.toByteArray();
+  }
+
+  private static byte[] encode(FastLZWEncoder encoder) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    encoder.encode(out);
+    return out.toByteArray();
+  }
+
+  private static byte[] unpackSubBlocks(byte[] encoded) {
+    ByteArrayOutputStream codes = new ByteArrayOutputStream();
+    int pos = 1; // skip the initial code size
+    int length;
+    while ((length = encoded[pos++] & 0xff) != 0) {
+      codes.write(encoded, pos, length);
+      pos += length;
+    }
+    assertThat(pos, equalTo(encoded.length));
+    return codes.toByteArray();
+  }
+
+  private static byte[] gradient() {
+    byte[] pixels = new byte[WIDTH * HEIGHT];
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        pixels[y * WIDTH + x] = (byte) ((x / 8 + y / 8) & 0xff);
+      }
+    }
+    return pixels;
+  }
+}
@@ -0,0 +1,221 @@
+package io.flutter.plugins.imagepicker.gif_compression.gif_encoder;
+
+import static io.flutter.plugins.imagepicker.benchmark.Benchmark.assertWithinBudget;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.ANIMATION_FRAMES;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.ANIMATION_HEIGHT;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.ANIMATION_WIDTH;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.PHOTO_HEIGHT;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.PHOTO_WIDTH;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.SCREENSHOT_HEIGHT;
+import static io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus.SCREENSHOT_WIDTH;
+
+import android.graphics.Bitmap;
+import io.flutter.plugins.imagepicker.benchmark.Benchmark;
+import io.flutter.plugins.imagepicker.benchmark.BenchmarkCorpus;
+import java.io.ByteArrayOutputStream;
+import org.junit.Test;
+
+/** Measures the GIF encoder and its parts on the benchmark corpus. */
+public class GifEncoderBenchmarkTest {
+  private static final int ROUNDS = 5;
+  // AnimatedGifEncoder's default quality.
+  private static final int QUANTIZER_SAMPLE = 10;
+  private static final int COLOR_DEPTH = 8;
+
+  @Test
+  public void neuQuant_Photo() throws Exception {
+    final byte[] bgr = BenchmarkCorpus.toBgr(BenchmarkCorpus.photoPixels());
+
+    Benchmark.Result result =
+        Benchmark.run(
+            "NeuQuant photo",
+            megapixels(PHOTO_WIDTH, PHOTO_HEIGHT),
+            ROUNDS,
+            new Benchmark.Task() {
+              @Override
+              public long run() {
+                NeuQuant neuQuant = new NeuQuant(bgr, bgr.length, QUANTIZER_SAMPLE);
+                byte[] colorMap = neuQuant.process();
+                index(neuQuant, bgr);
+                return colorMap.length;
+              }
+            });
+
+    assertWithinBudget(result, 2 * 1024 * 1024, 768);
+  }
+
+  @Test
+  public void neuQuantIndexing_Photo() throws Exception {
+    final byte[] bgr = BenchmarkCorpus.toBgr(BenchmarkCorpus.photoPixels());
+    final NeuQuant neuQuant = new NeuQuant(bgr, bgr.length, QUANTIZER_SAMPLE);
+    neuQuant.process();
+
+    Benchmark.Result map =
+        Benchmark.run(
+            "NeuQuant map photo",
+            megapixels(PHOTO_WIDTH, PHOTO_HEIGHT),
+            ROUNDS,
+            new Benchmark.Task() {
+              @Override
+              public long run() {
+                byte[] indexed = new byte[bgr.length / 3];
+                for (int i = 0, k = 0; i < indexed.length; i++, k += 3) {
+                  indexed[i] =
+                      (byte) neuQuant.map(bgr[k] & 0xff, bgr[k + 1] & 0xff, bgr[k + 2] & 0xff);
+                }
+                return indexed.length;
+              }
+            });
+    Benchmark.Result lookup =
+        Benchmark.run(
+            "NeuQuant lookup photo",
+            megapixels(PHOTO_WIDTH, PHOTO_HEIGHT),
+            ROUNDS,
+            new Benchmark.Task() {
+              @Override
+              public long run() {
+                return index(neuQuant, bgr).length;
+              }
+            });
+
+    int pixels = PHOTO_WIDTH * PHOTO_HEIGHT;
+    assertWithinBudget(map, pixels + pixels / 2, pixels);
+    assertWithinBudget(lookup, pixels + pixels / 2, pixels);
+  }
+
+  @Test
+  public void lzwEncoder_Photo() throws Exception {
+    benchmarkLzw(
+        "photo", BenchmarkCorpus.photoPixels(), PHOTO_WIDTH, PHOTO_HEIGHT, 1024 * 1024, 240 * 1024);
+  }
+
+  @Test
+  public void lzwEncoder_Screenshot() throws Exception {
+    benchmarkLzw(
+        "screenshot",
+        BenchmarkCorpus.screenshotPixels(),
+        SCREENSHOT_WIDTH,
+        SCREENSHOT_HEIGHT,
+        256 * 1024,
+        40 * 1024);
+  }
+
+  @Test
+  public void animatedGifEncoder_Photo() throws Exception {
+    final Bitmap photo =
+        BenchmarkCorpus.bitmap(BenchmarkCorpus.photoPixels(), PHOTO_WIDTH, PHOTO_HEIGHT);
+
+    Benchmark.Result result =
+        Benchmark.run(
+            "AnimatedGifEncoder photo",
+            megapixels(PHOTO_WIDTH, PHOTO_HEIGHT),
+            ROUNDS,
+            new Benchmark.Task() {
+              @Override
+              public long run() {
+                AnimatedGifEncoder encoder = new AnimatedGifEncoder();
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                encoder.start(out);
+                encoder.addFrame(photo);
+                encoder.finish();
+                return out.size();
+              }
+            });
+
+    assertWithinBudget(result, 11 * 1024 * 1024, 240 * 1024);
+  }
+
+  @Test
+  public void animatedGifEncoder_Animation() throws Exception {
+    int[][] frames = BenchmarkCorpus.animationFrames();
+    final Bitmap[] bitmaps = new Bitmap[frames.length];
+    for (int i = 0; i < frames.length; i++) {
+      bitmaps[i] = BenchmarkCorpus.bitmap(frames[i], ANIMATION_WIDTH, ANIMATION_HEIGHT);
+    }
+
+    Benchmark.Result result =
+        Benchmark.run(
+            "AnimatedGifEncoder animation",
+            megapixels(ANIMATION_WIDTH, ANIMATION_HEIGHT) * ANIMATION_FRAMES,
+            ROUNDS,
+            new Benchmark.Task() {
+              @Override
+              public long run() {
+                // Set up as GifCompressionAsync does, but on one thread so all work is measured.
+                AnimatedGifEncoder encoder = new AnimatedGifEncoder();
+                encoder.setGlobalPalette(true);
+                encoder.setFrameDifferencing(true);
+                encoder.addPaletteSample(bitmaps[0]);
+                encoder.addPaletteSample(bitmaps[bitmaps.length / 2]);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                encoder.start(out);
+                encoder.setRepeat(0);
+                encoder.setDelay(40);
+                for (Bitmap bitmap : bitmaps) {
+                  encoder.addFrame(bitmap);
+                }
+                encoder.finish();
+                return out.size();
+              }
+            });
+
+    assertWithinBudget(result, 5 * 1024 * 1024, 30 * 1024);
+  }
+
+  private void benchmarkLzw(
+      String name,
+      int[] argb,
+      final int width,
+      final int height,
+      long maxAllocatedBytes,
+      long maxOutputBytes)
+      throws Exception {
+    byte[] bgr = BenchmarkCorpus.toBgr(argb);
+    NeuQuant neuQuant = new NeuQuant(bgr, bgr.length, QUANTIZER_SAMPLE);
+    neuQuant.process();
+    final byte[] indexed = index(neuQuant, bgr);
+
+    Benchmark.Result classic =
+        Benchmark.run(
+            "LZWEncoder " + name,
+            megapixels(width, height),
+            ROUNDS,
+            new Benchmark.Task() {
+              @Override
+              public long run() throws Exception {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                new LZWEncoder(width, height, indexed, COLOR_DEPTH).encode(out);
+                return out.size();
+              }
+            });
+    Benchmark.Result fast =
+        Benchmark.run(
+            "FastLZWEncoder " + name,
+            megapixels(width, height),
+            ROUNDS,
+            new Benchmark.Task() {
+              @Override
+              public long run() throws Exception {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                new FastLZWEncoder(width, height, indexed, COLOR_DEPTH).encode(out);
+                return out.size();
+              }
+            });
+
+    assertWithinBudget(classic, maxAllocatedBytes, maxOutputBytes);
+    assertWithinBudget(fast, maxAllocatedBytes, maxOutputBytes);
+  }
+
+  /** Maps BGR pixels to palette indices with a trained quantizer, as the encoder does. */
+  private static byte[] index(NeuQuant neuQuant, byte[] bgr) {
+    byte[] indexed = new byte[bgr.length / 3];
+    for (int i = 0, k = 0; i < indexed.length; i++, k += 3) {
+      indexed[i] = (byte) neuQuant.lookup(bgr[k] & 0xff, bgr[k + 1] & 0xff, bgr[k + 2] & 0xff);
+    }
+    return indexed;
+  }
+
+  private static double megapixels(int width, int height) {
+    return width * height / 1e6;
+  }
+}
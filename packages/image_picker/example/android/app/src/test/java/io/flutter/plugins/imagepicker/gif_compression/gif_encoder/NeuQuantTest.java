@@ -0,0 +1,69 @@
+package io.flutter.plugins.imagepicker.gif_compression.gif_encoder;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NeuQuantTest {
+  private static final int WIDTH = 320;
+  private static final int HEIGHT = 240;
+  // A lookup answers for the centre of its 4x4x4 cell, which is at most 6 away from any colour
+  // in the cell in L1 distance, so it can be at most twice that worse than the exact search.
+  private static final int MAX_EXTRA_DISTANCE = 12;
+
+  private byte[] pixels;
+  private NeuQuant neuQuant;
+  private byte[] colorMap;
+
+  @Before
+  public void setUp() {
+    pixels = new byte[WIDTH * HEIGHT * 3];
+    Random random = new Random(42);
+    int k = 0;
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        // A smooth gradient with some noise, roughly what a photo frame looks like.
+        pixels[k++] = (byte) (x * 255 / WIDTH);
+        pixels[k++] = (byte) (y * 255 / HEIGHT);
+        pixels[k++] = (byte) (128 + random.nextInt(32));
+      }
+    }
+    neuQuant = new NeuQuant(pixels, pixels.length, 10);
+    colorMap = neuQuant.process();
+  }
+
+  @Test
+  public void lookup_StaysCloseToExactMap() {
+    Random random = new Random(7);
+    for (int i = 0; i < 100000; i++) {
+      int b = random.nextInt(256);
+      int g = random.nextInt(256);
+      int r = random.nextInt(256);
+
+      int exact = distance(neuQuant.map(b, g, r), b, g, r);
+      int cached = distance(neuQuant.lookup(b, g, r), b, g, r);
+
+      assertTrue(cached <= exact + MAX_EXTRA_DISTANCE);
+    }
+  }
+
+  @Test
+  public void lookup_ReturnsSameIndexOnceCellIsFilled() {
+    for (int k = 0; k < pixels.length; k += 3) {
+      int b = pixels[k] & 0xff;
+      int g = pixels[k + 1] & 0xff;
+      int r = pixels[k + 2] & 0xff;
+      assertThat(neuQuant.lookup(b, g, r), equalTo(neuQuant.lookup(b, g, r)));
+    }
+  }
+
+  private int distance(int index, int b, int g, int r) {
+    return Math.abs((colorMap[index * 3] & 0xff) - b)
+        + Math.abs((colorMap[index * 3 + 1] & 0xff) - g)
+        + Math.abs((colorMap[index * 3 + 2] & 0xff) - r);
+  }
+}
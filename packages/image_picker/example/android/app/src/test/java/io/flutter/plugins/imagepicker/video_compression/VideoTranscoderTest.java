@@ -0,0 +1,33 @@
+package io.flutter.plugins.imagepicker.video_compression;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class VideoTranscoderTest {
+
+  @Test
+  public void targetSize_LimitsTheShorterSide() {
+    assertArrayEquals(new int[] {1280, 720}, VideoTranscoder.targetSize(3840, 2160, 720));
+    assertArrayEquals(new int[] {720, 1280}, VideoTranscoder.targetSize(2160, 3840, 720));
+  }
+
+  @Test
+  public void targetSize_KeepsSmallerVideosAndRoundsToEven() {
+    assertArrayEquals(new int[] {640, 480}, VideoTranscoder.targetSize(640, 480, 720));
+    assertArrayEquals(new int[] {640, 480}, VideoTranscoder.targetSize(640, 480, null));
+    assertArrayEquals(new int[] {178, 100}, VideoTranscoder.targetSize(1777, 999, 100));
+  }
+
+  @Test
+  public void targetBitrate_ScalesWithPixelsAndIsCapped() {
+    assertThat(VideoTranscoder.targetBitrate(40000000, 3840 * 2160, 1920 * 1080, null),
+        equalTo(10000000));
+    assertThat(VideoTranscoder.targetBitrate(40000000, 3840 * 2160, 1920 * 1080, 4000000),
+        equalTo(4000000));
+    assertThat(VideoTranscoder.targetBitrate(2000000, 1280 * 720, 1280 * 720, 4000000),
+        equalTo(2000000));
+  }
+}
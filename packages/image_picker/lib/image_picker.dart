@@ -24,6 +24,12 @@ class ImagePicker {
   static const MethodChannel _channel =
       MethodChannel('plugins.flutter.io/image_picker');
 
+  static const EventChannel _multiImageChannel =
+      EventChannel('plugins.flutter.io/image_picker/multi_image');
+
+  static const EventChannel _videoProgressChannel =
+      EventChannel('plugins.flutter.io/image_picker/video_progress');
+
   /// Returns a [File] object pointing to the image that was picked.
   ///
   /// The `source` argument controls where the image comes from. This can
@@ -38,15 +44,21 @@ class ImagePicker {
   /// image types such as JPEG. If compression is not supported for the image that is picked,
   /// an warning message will be logged.
   ///
+  /// On Android, if `maxGifFrameRate` is greater than 0, an animated GIF that
+  /// is resized and shows more frames per second than that has frames dropped,
+  /// keeping its overall timing. By default every frame is kept.
+  ///
   /// In Android, the MainActivity can be destroyed for various reasons. If that happens, the result will be lost
   /// in this call. You can then call [retrieveLostData] when your app relaunches to retrieve the lost data.
   static Future<File> pickImage(
       {@required ImageSource source,
       double maxWidth,
       double maxHeight,
-      int imageQuality}) async {
+      int imageQuality,
+      int maxGifFrameRate = 0}) async {
     assert(source != null);
     assert(imageQuality == null || (imageQuality >= 0 && imageQuality <= 100));
+    assert(maxGifFrameRate != null && maxGifFrameRate >= 0);
 
     if (maxWidth != null && maxWidth < 0) {
       throw ArgumentError.value(maxWidth, 'maxWidth cannot be negative');
@@ -62,31 +74,95 @@ class ImagePicker {
         'source': source.index,
         'maxWidth': maxWidth,
         'maxHeight': maxHeight,
-        'imageQuality': imageQuality
+        'imageQuality': imageQuality,
+        'maxGifFrameRate': maxGifFrameRate,
       },
     );
 
     return path == null ? null : File(path);
   }
 
+  /// Lets the user pick several images from the gallery, and returns a stream of
+  /// [File] objects pointing to them. (Android only)
+  ///
+  /// The `maxWidth`, `maxHeight`, `imageQuality` and `maxGifFrameRate`
+  /// arguments apply to every picked image, as in [pickImage]. The images are resized in parallel and
+  /// each one is added to the stream as soon as it is ready, so they do not
+  /// necessarily arrive in the order they were picked. An image that could not
+  /// be read or resized is added as a [PlatformException] error instead. The
+  /// stream closes once all picked images are done, or right away if the user
+  /// cancels.
+  ///
+  /// Only one pick, of either kind, can be active at a time. Cancelling the
+  /// subscription stops further images from being delivered.
+  static Stream<File> pickMultiImage(
+      {double maxWidth,
+      double maxHeight,
+      int imageQuality,
+      int maxGifFrameRate = 0}) {
+    assert(imageQuality == null || (imageQuality >= 0 && imageQuality <= 100));
+    assert(maxGifFrameRate != null && maxGifFrameRate >= 0);
+
+    if (maxWidth != null && maxWidth < 0) {
+      throw ArgumentError.value(maxWidth, 'maxWidth cannot be negative');
+    }
+
+    if (maxHeight != null && maxHeight < 0) {
+      throw ArgumentError.value(maxHeight, 'maxHeight cannot be negative');
+    }
+
+    return _multiImageChannel.receiveBroadcastStream(<String, dynamic>{
+      'maxWidth': maxWidth,
+      'maxHeight': maxHeight,
+      'imageQuality': imageQuality,
+      'maxGifFrameRate': maxGifFrameRate,
+    }).map<File>((dynamic path) => File(path));
+  }
+
   /// Returns a [File] object pointing to the video that was picked.
   ///
   /// The [source] argument controls where the video comes from. This can
   /// be either [ImageSource.camera] or [ImageSource.gallery].
   ///
+  /// On Android, if `maxVideoBitrate` (in bits per second) or `maxVideoHeight`
+  /// (in pixels) is specified and the video exceeds it, an H.264 MP4 copy of
+  /// the video is returned instead. `maxVideoHeight` limits the smaller side
+  /// of the video, so 720 makes both landscape and portrait videos 720p. The
+  /// `onTranscodeProgress` callback is called with values from 0 to 1 while
+  /// the copy is made. If the video cannot be transcoded on the device, the
+  /// original is returned. These arguments are ignored on iOS.
+  ///
   /// In Android, the MainActivity can be destroyed for various fo reasons. If that happens, the result will be lost
   /// in this call. You can then call [retrieveLostData] when your app relaunches to retrieve the lost data.
   static Future<File> pickVideo({
     @required ImageSource source,
+    int maxVideoBitrate,
+    int maxVideoHeight,
+    ValueChanged<double> onTranscodeProgress,
   }) async {
     assert(source != null);
-    final String path = await _channel.invokeMethod<String>(
-      'pickVideo',
-      <String, dynamic>{
-        'source': source.index,
-      },
-    );
-    return path == null ? null : File(path);
+    assert(maxVideoBitrate == null || maxVideoBitrate > 0);
+    assert(maxVideoHeight == null || maxVideoHeight > 0);
+
+    StreamSubscription<dynamic> progress;
+    if (onTranscodeProgress != null) {
+      progress = _videoProgressChannel
+          .receiveBroadcastStream()
+          .listen((dynamic value) => onTranscodeProgress(value));
+    }
+    try {
+      final String path = await _channel.invokeMethod<String>(
+        'pickVideo',
+        <String, dynamic>{
+          'source': source.index,
+          'maxVideoBitrate': maxVideoBitrate,
+          'maxVideoHeight': maxVideoHeight,
+        },
+      );
+      return path == null ? null : File(path);
+    } finally {
+      await progress?.cancel();
+    }
   }
 
   /// Retrieve the lost image file when [pickImage] or [pickVideo] failed because the  MainActivity is destroyed. (Android only)
@@ -2,6 +2,9 @@
 // Use of this source code is governed by a BSD-style license that can be
 // found in the LICENSE file.
 
+import 'dart:async';
+import 'dart:io';
+
 import 'package:flutter/services.dart';
 import 'package:flutter_test/flutter_test.dart';
 import 'package:image_picker/image_picker.dart';
@@ -34,13 +37,15 @@ void main() {
               'source': 0,
               'maxWidth': null,
               'maxHeight': null,
-              'imageQuality': null
+              'imageQuality': null,
+              'maxGifFrameRate': 0
             }),
             isMethodCall('pickImage', arguments: <String, dynamic>{
               'source': 1,
               'maxWidth': null,
               'maxHeight': null,
-              'imageQuality': null
+              'imageQuality': null,
+              'maxGifFrameRate': 0
             }),
           ],
         );
@@ -78,43 +83,68 @@ void main() {
               'source': 0,
               'maxWidth': null,
               'maxHeight': null,
-              'imageQuality': null
+              'imageQuality': null,
+              'maxGifFrameRate': 0
             }),
             isMethodCall('pickImage', arguments: <String, dynamic>{
               'source': 0,
               'maxWidth': 10.0,
               'maxHeight': null,
-              'imageQuality': null
+              'imageQuality': null,
+              'maxGifFrameRate': 0
             }),
             isMethodCall('pickImage', arguments: <String, dynamic>{
               'source': 0,
               'maxWidth': null,
               'maxHeight': 10.0,
-              'imageQuality': null
+              'imageQuality': null,
+              'maxGifFrameRate': 0
             }),
             isMethodCall('pickImage', arguments: <String, dynamic>{
               'source': 0,
               'maxWidth': 10.0,
               'maxHeight': 20.0,
-              'imageQuality': null
+              'imageQuality': null,
+              'maxGifFrameRate': 0
             }),
             isMethodCall('pickImage', arguments: <String, dynamic>{
               'source': 0,
               'maxWidth': 10.0,
               'maxHeight': null,
-              'imageQuality': 70
+              'imageQuality': 70,
+              'maxGifFrameRate': 0
             }),
             isMethodCall('pickImage', arguments: <String, dynamic>{
               'source': 0,
               'maxWidth': null,
               'maxHeight': 10.0,
-              'imageQuality': 70
+              'imageQuality': 70,
+              'maxGifFrameRate': 0
             }),
             isMethodCall('pickImage', arguments: <String, dynamic>{
               'source': 0,
               'maxWidth': 10.0,
               'maxHeight': 20.0,
-              'imageQuality': 70
+              'imageQuality': 70,
+              'maxGifFrameRate': 0
+            }),
+          ],
+        );
+      });
+
+      test('passes the maxGifFrameRate argument correctly', () async {
+        await ImagePicker.pickImage(
+            source: ImageSource.gallery, maxGifFrameRate: 15);
+
+        expect(
+          log,
+          <Matcher>[
+            isMethodCall('pickImage', arguments: <String, dynamic>{
+              'source': 1,
+              'maxWidth': null,
+              'maxHeight': null,
+              'imageQuality': null,
+              'maxGifFrameRate': 15
             }),
           ],
         );
@@ -141,6 +171,108 @@ void main() {
       });
     });
 
+    group('#pickMultiImage', () {
+      // Event channels start streams through a method channel of the same name.
+      const MethodChannel multiImageChannel =
+          MethodChannel('plugins.flutter.io/image_picker/multi_image');
+
+      setUp(() {
+        multiImageChannel.setMockMethodCallHandler((MethodCall methodCall) async {
+          log.add(methodCall);
+          return null;
+        });
+      });
+
+      tearDown(() {
+        multiImageChannel.setMockMethodCallHandler(null);
+      });
+
+      test('passes the resize arguments correctly', () async {
+        final StreamSubscription<File> subscription = ImagePicker.pickMultiImage(
+                maxWidth: 10.0, maxHeight: 20.0, imageQuality: 70)
+            .listen((File file) {});
+        await Future<void>.delayed(Duration.zero);
+        await subscription.cancel();
+
+        expect(
+          log.first,
+          isMethodCall('listen', arguments: <String, dynamic>{
+            'maxWidth': 10.0,
+            'maxHeight': 20.0,
+            'imageQuality': 70,
+            'maxGifFrameRate': 0
+          }),
+        );
+      });
+
+      test('does not accept a negative width or height argument', () {
+        expect(
+          () => ImagePicker.pickMultiImage(maxWidth: -1.0),
+          throwsArgumentError,
+        );
+
+        expect(
+          () => ImagePicker.pickMultiImage(maxHeight: -1.0),
+          throwsArgumentError,
+        );
+      });
+    });
+
+    group('#pickVideo', () {
+      const MethodChannel videoProgressChannel =
+          MethodChannel('plugins.flutter.io/image_picker/video_progress');
+
+      setUp(() {
+        videoProgressChannel
+            .setMockMethodCallHandler((MethodCall methodCall) async {
+          log.add(methodCall);
+          return null;
+        });
+      });
+
+      tearDown(() {
+        videoProgressChannel.setMockMethodCallHandler(null);
+      });
+
+      test('passes the transcode arguments correctly', () async {
+        await ImagePicker.pickVideo(source: ImageSource.camera);
+        await ImagePicker.pickVideo(
+          source: ImageSource.gallery,
+          maxVideoBitrate: 2000000,
+          maxVideoHeight: 720,
+        );
+
+        expect(
+          log,
+          <Matcher>[
+            isMethodCall('pickVideo', arguments: <String, dynamic>{
+              'source': 0,
+              'maxVideoBitrate': null,
+              'maxVideoHeight': null,
+            }),
+            isMethodCall('pickVideo', arguments: <String, dynamic>{
+              'source': 1,
+              'maxVideoBitrate': 2000000,
+              'maxVideoHeight': 720,
+            }),
+          ],
+        );
+      });
+
+      test('listens to transcode progress only while picking', () async {
+        await ImagePicker.pickVideo(
+          source: ImageSource.camera,
+          maxVideoHeight: 720,
+          onTranscodeProgress: (double progress) {},
+        );
+
+        expect(
+          log.map((MethodCall call) => call.method),
+          <String>['listen', 'pickVideo', 'cancel'],
+        );
+      });
+    });
+
     group('#retrieveLostData', () {
       test('retrieveLostData get success response', () async {
         channel.setMockMethodCallHandler((MethodCall methodCall) async {